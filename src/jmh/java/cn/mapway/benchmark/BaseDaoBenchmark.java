@@ -0,0 +1,95 @@
+package cn.mapway.benchmark;
+
+import cn.mapway.dao.BaseDao;
+import org.nutz.dao.Cnd;
+import org.nutz.dao.Dao;
+import org.nutz.dao.entity.annotation.Column;
+import org.nutz.dao.entity.annotation.Id;
+import org.nutz.dao.entity.annotation.Table;
+import org.nutz.dao.impl.NutDao;
+import org.nutz.dao.impl.SimpleDataSource;
+import org.nutz.dao.pager.Pager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BaseDao 在内嵌 H2 数据库上的基准测试
+ *
+ * @author zhangjianshe
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BaseDaoBenchmark {
+
+    private static final int ROWS = 10000;
+
+    private SimpleDataSource dataSource;
+    private BenchEntityDao entityDao;
+    private Pager pager;
+    private long nextId;
+
+    @Setup
+    public void setup() {
+        dataSource = new SimpleDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        Dao dao = new NutDao(dataSource);
+        dao.create(BenchEntity.class, true);
+
+        entityDao = new BenchEntityDao();
+        entityDao.setDao(dao);
+        for (int i = 1; i <= ROWS; i++) {
+            entityDao.fastInsert(BenchEntity.of(i));
+        }
+        pager = entityDao.createPager(10, 20);
+        nextId = ROWS + 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.close();
+    }
+
+    @Benchmark
+    public BenchEntity fetch() {
+        return entityDao.fetch(ROWS / 2);
+    }
+
+    @Benchmark
+    public List<BenchEntity> query() {
+        return entityDao.query(Cnd.where("score", ">", 100).asc("id"), pager);
+    }
+
+    @Benchmark
+    public BenchEntity fastInsert() {
+        return entityDao.fastInsert(BenchEntity.of(nextId++));
+    }
+
+    public static class BenchEntityDao extends BaseDao<BenchEntity> {
+    }
+
+    @Table("bench_entity")
+    public static class BenchEntity {
+        @Id(auto = false)
+        private long id;
+        @Column
+        private String name;
+        @Column
+        private int score;
+
+        static BenchEntity of(long id) {
+            BenchEntity entity = new BenchEntity();
+            entity.id = id;
+            entity.name = "name" + id;
+            entity.score = (int) (id % 1000);
+            return entity;
+        }
+    }
+}
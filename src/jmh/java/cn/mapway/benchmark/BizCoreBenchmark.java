@@ -0,0 +1,98 @@
+package cn.mapway.benchmark;
+
+import cn.mapway.biz.api.ApiListResult;
+import cn.mapway.biz.api.SystemCodeEnum;
+import cn.mapway.biz.constant.BizCode;
+import cn.mapway.biz.core.AbstractBizExecutor;
+import cn.mapway.biz.core.BizContext;
+import cn.mapway.biz.core.BizRequest;
+import cn.mapway.biz.core.BizResult;
+import cn.mapway.biz.exception.BizException;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 业务执行器 / 返回结果 / 业务代码 的基准测试
+ * 运行 mvn -P benchmarks test-compile exec:exec
+ *
+ * @author zhangjianshe
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BizCoreBenchmark {
+
+    private BizContext context;
+    private BizRequest<String> request;
+    private BizRequest<String> failRequest;
+    private AbstractBizExecutor<String, String> executor;
+    private BizCode bizCode;
+    private List<String> rows;
+
+    @Setup
+    public void setup() {
+        context = new BizContext();
+        request = BizRequest.wrap("bench", "data");
+        failRequest = BizRequest.wrap("bench", "fail");
+        executor = new EchoExecutor();
+        bizCode = new BizCode(40001000, "参数{0}错误,期望{1}");
+        rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add("row" + i);
+        }
+    }
+
+    @Benchmark
+    public BizResult<String> executeSuccess() {
+        return executor.execute(context, request);
+    }
+
+    @Benchmark
+    public BizResult<String> executeBizException() {
+        return executor.execute(context, failRequest);
+    }
+
+    @Benchmark
+    public BizResult<String> resultSuccess() {
+        return BizResult.success("data");
+    }
+
+    @Benchmark
+    public BizResult<String> resultError() {
+        return BizResult.error(SystemCodeEnum.FAIL, "error");
+    }
+
+    @Benchmark
+    public Object codeBind() {
+        return bizCode.bind("name", "string");
+    }
+
+    @Benchmark
+    public BizException exceptionGet() {
+        return BizException.get(500, "error");
+    }
+
+    @Benchmark
+    public ApiListResult<?> listResult() {
+        return ApiListResult.result(200, "", rows);
+    }
+
+    /**
+     * 原样返回请求数据的执行器, 数据为 fail 时抛出业务异常
+     */
+    static class EchoExecutor extends AbstractBizExecutor<String, String> {
+        @Override
+        protected BizResult<String> process(BizContext context, BizRequest<String> bizParam) {
+            if ("fail".equals(bizParam.getData())) {
+                throw BizException.get(SystemCodeEnum.FAIL, "fail");
+            }
+            return BizResult.success(bizParam.getData());
+        }
+    }
+}
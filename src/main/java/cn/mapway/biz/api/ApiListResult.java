@@ -8,6 +8,7 @@ import lombok.Data;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -42,6 +43,11 @@ public class ApiListResult<T> implements Serializable {
     private String message;
     @ApiField(value = "数据列表")
     private List<T> data;
+    /**
+     * 游标分页时下一页的游标
+     */
+    @ApiField(value = "下一页的游标,没有更多数据时为空",example = "")
+    private String cursor;
 
     /**
      * 根据ErrorCode 创建返回结果集
@@ -59,6 +65,8 @@ public class ApiListResult<T> implements Serializable {
     }
 
     /**
+     * 传入的 List 直接作为数据列表, 不会复制, 调用者之后对列表的修改会反映到结果中
+     * 其他集合复制为 ArrayList, 单个对象包装为只读的单元素列表
      *
      * @param code code
      * @param message message
@@ -67,21 +75,40 @@ public class ApiListResult<T> implements Serializable {
      * @return data
      */
     public static <T> ApiListResult<T> result(Integer code, String message, T dataParameter) {
+        return create(code, message, dataParameter, false);
+    }
+
+    /**
+     * 和 result(code,message,data) 相同, 但是总是复制一份数据列表, 结果和调用者的集合相互隔离
+     *
+     * @param code code
+     * @param message message
+     * @param dataParameter data
+     * @param <T> data
+     * @return data
+     */
+    public static <T> ApiListResult<T> copyOf(Integer code, String message, T dataParameter) {
+        return create(code, message, dataParameter, true);
+    }
+
+    private static <T> ApiListResult<T> create(Integer code, String message, T dataParameter, boolean copy) {
         ApiListResult result = new ApiListResult();
         result.setCode(code);
         result.setMessage(message);
         if (dataParameter != null) {
-            if (Collection.class.isAssignableFrom(dataParameter.getClass())) {
+            if (dataParameter instanceof Collection) {
                 Collection collection = (Collection) dataParameter;
-                ArrayList list = new ArrayList<>();
-                list.addAll(collection);
-                result.setData(list);
+                if (!copy && dataParameter instanceof List) {
+                    result.setData((List) collection);
+                } else {
+                    result.setData(new ArrayList<>(collection));
+                }
                 result.setTotal(0l + collection.size());
                 result.setPageSize(20L);
                 result.setPage(1L);
             } else {
-                result.setData(new ArrayList());
-                result.getData().add(dataParameter);
+                result.setData(copy ? new ArrayList<>(Collections.singletonList(dataParameter))
+                        : Collections.singletonList(dataParameter));
                 result.setPageSize(10L);
                 result.setTotal(1L);
                 result.setPage(1L);
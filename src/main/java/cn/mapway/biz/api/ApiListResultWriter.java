@@ -0,0 +1,170 @@
+package cn.mapway.biz.api;
+
+import org.nutz.json.Json;
+import org.nutz.json.JsonFormat;
+import org.nutz.json.JsonRender;
+import org.nutz.json.impl.JsonRenderImpl;
+import org.nutz.lang.Mirror;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * 以流的方式输出 ApiListResult 格式的 JSON
+ * 先输出 code message 和分页信息 (包括游标), 然后逐行输出数据, 不需要把整个列表放到内存中.
+ * <pre>
+ * ApiListResultWriter writer = new ApiListResultWriter(out);
+ * writer.begin(200, "", 1L, 20L, null);
+ * dao.each(cnd, (index, row, length) -&gt; writer.row(row));
+ * writer.end();
+ * </pre>
+ * begin 时没有提供 total 的, 在数据列表之后输出实际的行数.
+ * 所有数据共用一个 JsonRender, 中间不会 flush, 只在 end 时 flush 一次
+ *
+ * @author zhangjianshe
+ */
+public class ApiListResultWriter {
+
+    private final Writer writer;
+    private final JsonRender render;
+    private Long total;
+    private long count;
+    private boolean started;
+    private boolean finished;
+
+    /**
+     * @param writer 输出目标
+     */
+    public ApiListResultWriter(Writer writer) {
+        this(writer, JsonFormat.compact());
+    }
+
+    /**
+     * @param writer 输出目标
+     * @param format 每行数据的 JSON 格式
+     */
+    public ApiListResultWriter(Writer writer, JsonFormat format) {
+        this.writer = writer;
+        this.render = createRender();
+        this.render.setWriter(writer);
+        this.render.setFormat(format == null ? JsonFormat.compact() : format);
+    }
+
+    /**
+     * 和 Json.toJson 使用同样的 JsonRender 实现, 但是不会在每次输出以后 flush
+     */
+    private static JsonRender createRender() {
+        Class<? extends JsonRender> type = Json.getJsonRenderCls();
+        return type == null ? new JsonRenderImpl() : Mirror.me(type).born();
+    }
+
+    /**
+     * 输出列表之前的字段
+     *
+     * @param code     code
+     * @param message  message
+     * @param page     当前页, 可以为 null
+     * @param pageSize 分页大小, 可以为 null
+     * @param total    总条数, 为 null 时在列表之后输出实际行数
+     */
+    public void begin(Integer code, String message, Long page, Long pageSize, Long total) {
+        begin(code, message, page, pageSize, total, null);
+    }
+
+    /**
+     * 输出列表之前的字段
+     *
+     * @param code     code
+     * @param message  message
+     * @param page     当前页, 可以为 null
+     * @param pageSize 分页大小, 可以为 null
+     * @param total    总条数, 为 null 时在列表之后输出实际行数
+     * @param cursor   游标分页时下一页的游标, 为 null 时不输出
+     */
+    public void begin(Integer code, String message, Long page, Long pageSize, Long total, String cursor) {
+        if (started) {
+            throw new IllegalStateException("begin 只能调用一次");
+        }
+        started = true;
+        this.total = total;
+        try {
+            writer.write("{\"code\":");
+            render.render(code);
+            writer.write(",\"message\":");
+            render.render(message);
+            writeNumber("page", page);
+            writeNumber("pageSize", pageSize);
+            writeNumber("total", total);
+            if (cursor != null) {
+                writer.write(",\"cursor\":");
+                render.render(cursor);
+            }
+            writer.write(",\"data\":[");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 输出一行数据
+     *
+     * @param row row
+     */
+    public void row(Object row) {
+        if (!started || finished) {
+            throw new IllegalStateException("需要在 begin 和 end 之间输出数据");
+        }
+        try {
+            if (count > 0) {
+                writer.write(',');
+            }
+            render.render(row);
+            count++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 结束输出
+     *
+     * @return 输出的行数
+     */
+    public long end() {
+        if (!started) {
+            throw new IllegalStateException("没有调用 begin");
+        }
+        if (finished) {
+            return count;
+        }
+        finished = true;
+        try {
+            writer.write(']');
+            if (total == null) {
+                writeNumber("total", count);
+            }
+            writer.write('}');
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return count;
+    }
+
+    /**
+     * @return 已经输出的行数
+     */
+    public long getCount() {
+        return count;
+    }
+
+    private void writeNumber(String name, Long value) throws IOException {
+        if (value != null) {
+            writer.write(",\"");
+            writer.write(name);
+            writer.write("\":");
+            writer.write(Long.toString(value));
+        }
+    }
+}
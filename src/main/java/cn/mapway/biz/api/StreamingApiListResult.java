@@ -0,0 +1,168 @@
+package cn.mapway.biz.api;
+
+import cn.mapway.biz.constant.IBizCode;
+import lombok.Getter;
+import org.nutz.json.JsonFormat;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+/**
+ * 流式的列表返回结果
+ * 和 ApiListResult 输出相同结构的 JSON, 数据来自 Iterable 或者 Stream,
+ * 输出的时候逐行序列化, 内存占用和数据行数无关.
+ * 数据只能输出一次, 数据来源是 Stream 时, 输出以后或者 close 时关闭 Stream.
+ *
+ * @param <T> 数据类型
+ * @author zhangjianshe
+ */
+public class StreamingApiListResult<T> implements AutoCloseable {
+
+    @Getter
+    private Integer code;
+    @Getter
+    private String message;
+    @Getter
+    private Long page;
+    @Getter
+    private Long pageSize;
+    @Getter
+    private Long total;
+    @Getter
+    private String cursor;
+    private final Iterable<T> rows;
+    private final AutoCloseable source;
+
+    private StreamingApiListResult(Iterable<T> rows, AutoCloseable source) {
+        this.code = SystemCodeEnum.SUCCESS.getCode();
+        this.message = SystemCodeEnum.SUCCESS.getMessage();
+        this.rows = rows;
+        this.source = source;
+    }
+
+    /**
+     * 成功的结果
+     *
+     * @param rows 数据
+     * @param <T>  数据类型
+     * @return result
+     */
+    public static <T> StreamingApiListResult<T> success(Iterable<T> rows) {
+        return new StreamingApiListResult<>(rows, null);
+    }
+
+    /**
+     * 成功的结果
+     *
+     * @param rows 数据, 输出以后关闭
+     * @param <T>  数据类型
+     * @return result
+     */
+    public static <T> StreamingApiListResult<T> success(Stream<T> rows) {
+        return new StreamingApiListResult<>(rows::iterator, rows);
+    }
+
+    /**
+     * 根据ErrorCode 创建返回结果集
+     *
+     * @param resultCode 返回码枚举接口
+     * @param rows       数据
+     * @param parameters 返回消息需要格式化的参数
+     * @param <T>        数据类型
+     * @return result
+     */
+    public static <T> StreamingApiListResult<T> result(IBizCode resultCode, Iterable<T> rows, String... parameters) {
+        StreamingApiListResult<T> result = new StreamingApiListResult<>(rows, null);
+        result.code = resultCode.getCode();
+        result.message = resultCode.bind(parameters).getMessage();
+        return result;
+    }
+
+    /**
+     * 设置分页信息
+     *
+     * @param page     当前页
+     * @param pageSize 分页大小
+     * @param total    总条数, 为 null 时输出实际行数
+     * @return this
+     */
+    public StreamingApiListResult<T> page(Long page, Long pageSize, Long total) {
+        this.page = page;
+        this.pageSize = pageSize;
+        this.total = total;
+        return this;
+    }
+
+    /**
+     * 设置游标分页时下一页的游标
+     *
+     * @param cursor 下一页的游标, 没有更多数据时为 null
+     * @return this
+     */
+    public StreamingApiListResult<T> cursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * 输出 JSON
+     *
+     * @param writer 输出目标, 不会被关闭
+     * @return 输出的行数
+     */
+    public long writeTo(Writer writer) {
+        return writeTo(writer, JsonFormat.compact());
+    }
+
+    /**
+     * 输出 JSON
+     *
+     * @param writer 输出目标, 不会被关闭
+     * @param format 每行数据的 JSON 格式
+     * @return 输出的行数
+     */
+    public long writeTo(Writer writer, JsonFormat format) {
+        try {
+            ApiListResultWriter out = new ApiListResultWriter(writer, format);
+            out.begin(code, message, page, pageSize, total, cursor);
+            if (rows != null) {
+                for (T row : rows) {
+                    out.row(row);
+                }
+            }
+            return out.end();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * 以 UTF-8 编码输出 JSON
+     *
+     * @param outputStream 输出目标, 不会被关闭
+     * @return 输出的行数
+     */
+    public long writeTo(OutputStream outputStream) {
+        return writeTo(new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), 8192));
+    }
+
+    /**
+     * 关闭数据来源
+     */
+    @Override
+    public void close() {
+        if (source != null) {
+            try {
+                source.close();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ public enum SystemCodeEnum implements IBizCode {
 
     SUCCESS(200, "操作成功"),
     FAIL(500, "运行错误:{0}"),
+    INVALID_CURSOR(400, "无效的分页游标"),
     RPC_ERROR(50001000, "RPC错误{0}"),
     BIZ_EMPTY(50002000, "业务处理逻辑为空 {0}"),
     DISTRIBUTED_LOCK_ERROR(50004000, "分布式锁异常{}"),
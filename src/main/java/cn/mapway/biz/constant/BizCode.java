@@ -1,5 +1,4 @@
 package cn.mapway.biz.constant;
-import java.text.MessageFormat;
 
 /**
  * 业务代码的缺省实现
@@ -7,8 +6,8 @@ import java.text.MessageFormat;
  * @author zhangjianshe
  */
 public class BizCode implements IBizCode {
-    String message;
-    Integer code;
+    final String message;
+    final Integer code;
 
     /**
      *
@@ -45,6 +44,6 @@ public class BizCode implements IBizCode {
      */
     @Override
     public IBizCode bind(String... values) {
-        return new BizCode(getCode(), MessageFormat.format(getMessage(), values));
+        return new BizCode(getCode(), MessageTemplate.format(getMessage(), values));
     }
 }
@@ -1,7 +1,6 @@
 package cn.mapway.biz.constant;
 
 import java.io.Serializable;
-import java.text.MessageFormat;
 
 /**
  * 对ErrorCode提供统一的访问方法,各个子系统和子模块在定义各自的错误编码时可以实现这个接口.
@@ -27,12 +26,13 @@ public interface IBizCode extends Serializable {
 
     /**
      * 对消息模板利用参数进行格式化 构造新的对象
+     * 模板支持 {0} {} %s 三种占位符
      *
      * @param values 模板的参数
      * @return object
      */
     default IBizCode bind(String... values) {
-        return new BizCode(getCode(), MessageFormat.format(getMessage(), values));
+        return new BizCode(getCode(), MessageTemplate.format(getMessage(), values));
     }
 
 }
@@ -0,0 +1,192 @@
+package cn.mapway.biz.constant;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预编译的消息模板
+ * 支持三种占位符:
+ * <ul>
+ * <li>{0} {1} 按照下标引用参数</li>
+ * <li>{} 按照顺序引用参数</li>
+ * <li>%s 按照顺序引用参数</li>
+ * </ul>
+ * 编译后的模板按照原始模式缓存, 缓存数量达到上限以后新的模式不再缓存,
+ * 避免动态拼接的消息撑爆缓存.
+ * 包含单引号或者 {0,number} 之类格式类型的模式 仍然交给 MessageFormat 处理, 保持原有的语义.
+ *
+ * @author zhangjianshe
+ */
+public final class MessageTemplate {
+
+    /**
+     * 缓存的模板数量上限
+     */
+    public static final int MAX_CACHE_SIZE = 1024;
+
+    private static final ConcurrentHashMap<String, MessageTemplate> CACHE = new ConcurrentHashMap<>();
+
+    private final String pattern;
+    /**
+     * 文本片段 长度比参数多1
+     */
+    private final String[] literals;
+    /**
+     * 每个占位符引用的参数下标
+     */
+    private final int[] indexes;
+    /**
+     * 占位符的原始文本, 参数不足时原样输出
+     */
+    private final String[] placeholders;
+    /**
+     * 需要 MessageFormat 处理的模式
+     */
+    private final MessageFormat legacy;
+
+    private MessageTemplate(String pattern, String[] literals, int[] indexes, String[] placeholders, MessageFormat legacy) {
+        this.pattern = pattern;
+        this.literals = literals;
+        this.indexes = indexes;
+        this.placeholders = placeholders;
+        this.legacy = legacy;
+    }
+
+    /**
+     * 格式化消息
+     *
+     * @param pattern 消息模板
+     * @param values  模板的参数
+     * @return 格式化后的消息
+     */
+    public static String format(String pattern, String... values) {
+        if (pattern == null) {
+            return null;
+        }
+        return compile(pattern).apply(values);
+    }
+
+    /**
+     * 获取编译后的模板
+     *
+     * @param pattern 消息模板
+     * @return 编译后的模板
+     */
+    public static MessageTemplate compile(String pattern) {
+        MessageTemplate template = CACHE.get(pattern);
+        if (template == null) {
+            template = parse(pattern);
+            if (CACHE.size() < MAX_CACHE_SIZE) {
+                CACHE.putIfAbsent(pattern, template);
+            }
+        }
+        return template;
+    }
+
+    /**
+     * 使用参数格式化模板
+     *
+     * @param values 模板的参数
+     * @return 格式化后的消息
+     */
+    public String apply(String... values) {
+        if (legacy != null) {
+            synchronized (legacy) {
+                return legacy.format(values);
+            }
+        }
+        if (indexes.length == 0 || values == null || values.length == 0) {
+            return pattern;
+        }
+        return join(values);
+    }
+
+    /**
+     * 模板中是否有占位符
+     *
+     * @return boolean
+     */
+    public boolean hasPlaceholder() {
+        return legacy != null || indexes.length > 0;
+    }
+
+    /**
+     * @return 原始模板
+     */
+    public String getPattern() {
+        return pattern;
+    }
+
+    private String join(String[] values) {
+        StringBuilder sb = new StringBuilder(pattern.length() + 16 * indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            sb.append(literals[i]);
+            int index = indexes[i];
+            if (index < values.length) {
+                sb.append(values[index]);
+            } else {
+                sb.append(placeholders[i]);
+            }
+        }
+        sb.append(literals[indexes.length]);
+        return sb.toString();
+    }
+
+    private static MessageTemplate parse(String pattern) {
+        if (pattern.indexOf('\'') >= 0) {
+            return legacy(pattern);
+        }
+        List<String> literals = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+        int sequence = 0;
+        int start = 0;
+        int length = pattern.length();
+        int i = 0;
+        while (i < length) {
+            char c = pattern.charAt(i);
+            if (c == '%' && i + 1 < length && pattern.charAt(i + 1) == 's') {
+                literals.add(pattern.substring(start, i));
+                indexes.add(sequence++);
+                placeholders.add("%s");
+                i += 2;
+                start = i;
+            } else if (c == '{') {
+                int end = i + 1;
+                while (end < length && Character.isDigit(pattern.charAt(end))) {
+                    end++;
+                }
+                if (end >= length || pattern.charAt(end) != '}' || end - i > 10) {
+                    // {0,number} 或者不规范的括号 交给 MessageFormat
+                    return legacy(pattern);
+                }
+                literals.add(pattern.substring(start, i));
+                if (end == i + 1) {
+                    indexes.add(sequence++);
+                } else {
+                    indexes.add(Integer.parseInt(pattern.substring(i + 1, end)));
+                }
+                placeholders.add(pattern.substring(i, end + 1));
+                i = end + 1;
+                start = i;
+            } else if (c == '}') {
+                return legacy(pattern);
+            } else {
+                i++;
+            }
+        }
+        literals.add(pattern.substring(start));
+        int[] indexArray = new int[indexes.size()];
+        for (int k = 0; k < indexArray.length; k++) {
+            indexArray[k] = indexes.get(k);
+        }
+        return new MessageTemplate(pattern, literals.toArray(new String[0]), indexArray,
+                placeholders.toArray(new String[0]), null);
+    }
+
+    private static MessageTemplate legacy(String pattern) {
+        return new MessageTemplate(pattern, new String[]{pattern}, new int[0], new String[0], new MessageFormat(pattern));
+    }
+}
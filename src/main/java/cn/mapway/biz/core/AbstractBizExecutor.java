@@ -1,10 +1,18 @@
 package cn.mapway.biz.core;
 
+import cn.mapway.biz.constant.IBizCode;
+import cn.mapway.biz.constant.MessageTemplate;
+import cn.mapway.biz.exception.BizErrorReporter;
 import cn.mapway.biz.exception.BizException;
+import cn.mapway.biz.metrics.BizMetrics;
+import cn.mapway.biz.metrics.BizMetricsSink;
+import cn.mapway.biz.validation.ParamValidator;
 import org.nutz.lang.Lang;
 import org.nutz.lang.Strings;
 
-import java.text.MessageFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
 /**
  * 业务流处理器
@@ -31,51 +39,137 @@ public abstract class AbstractBizExecutor<R, P> {
 
     /**
      * 这个方法是一个业务节点对外的服务约束
-     * 未来会处理这个逻辑
-     * 不建议使用,在业务代码中需要手动释放context,不释放容易造成内存泄漏
+     * 当前线程打开了 BizScope 时使用作用域的上下文, 作用域关闭时自动释放
+     * 否则使用线程变量中的上下文, 需要手动调用 removeContext 释放,不释放容易造成内存泄漏
      *
      * @param request 执行需要的参数
      * @return result
+     * @see BizScope
      */
     public BizResult<R> execute(BizRequest<P> request) {
-        return process(threadLocalBizContext.get(), request);
+        BizScope scope = BizScope.current();
+        BizContext context = scope != null ? scope.context() : threadLocalBizContext.get();
+        BizMetricsSink sink = BizMetrics.getSink();
+        if (sink == null) {
+            return process(context, request);
+        }
+        long start = System.nanoTime();
+        BizResult<R> result;
+        try {
+            result = process(context, request);
+        } catch (BizException exception) {
+            record(sink, request, start, exception.getCode(), null);
+            throw exception;
+        } catch (RuntimeException | Error e) {
+            record(sink, request, start, 500, e);
+            throw e;
+        }
+        record(sink, request, start, result == null ? null : result.getCode(), null);
+        return result;
     }
 
     /**
      * 扩展方法, 推荐使用该方法，由业务方定义传入
+     * 执行结束时把耗时和返回码交给 {@link BizMetrics} 的接收者
+     * 意外的异常转换为 500 错误, 异常交给 {@link BizErrorReporter} 在后台报告
      *
      * @param context context
      * @param request res=quest
      * @return data
      */
     public BizResult<R> execute(BizContext context, BizRequest<P> request) {
+        BizMetricsSink sink = BizMetrics.getSink();
+        long start = sink == null ? 0 : System.nanoTime();
+        BizResult<R> result;
+        Throwable unexpected = null;
         try {
             validateParameter(request.getData());
-            return process(context, request);
+            result = process(context, request);
         } catch (BizException exception) {
-            return BizResult.error(exception.getResponse());
+            result = BizResult.error(exception.getResponse());
         } catch (Exception e) {
-            e.printStackTrace();
-            String message=e.getMessage();
-            if(Strings.isBlank(e.getMessage()))
-            {
-                e.getCause().getMessage();
+            unexpected = e;
+            BizErrorReporter.getDefault().report(getMetricsType(), request == null ? null : request.getBizType(), e);
+            result = BizResult.error(500, errorMessage(e));
+        }
+        if (sink != null) {
+            record(sink, request, start, result == null ? null : result.getCode(), unexpected);
+        }
+        return result;
+    }
+
+    /**
+     * 意外异常返回给调用者的消息, 异常本身没有消息时使用 cause 的消息
+     */
+    private static String errorMessage(Throwable e) {
+        Throwable current = e;
+        int depth = 0;
+        while (current != null && depth++ < 8) {
+            if (!Strings.isBlank(current.getMessage())) {
+                return current.getMessage();
             }
-            return BizResult.error(500, message);
+            current = current.getCause();
         }
+        return e.getClass().getSimpleName();
+    }
+
+    /**
+     * 记录指标和报告异常时使用的执行器类型, 包装其他执行器的执行器返回被包装的类型
+     *
+     * @return 执行器类型
+     */
+    protected Class<?> getMetricsType() {
+        return getClass();
+    }
+
+    private void record(BizMetricsSink sink, BizRequest<P> request, long start, Integer code, Throwable unexpected) {
+        try {
+            sink.record(getMetricsType(), request == null ? null : request.getBizType(), System.nanoTime() - start, code, unexpected);
+        } catch (RuntimeException ignored) {
+            // 指标记录失败不影响业务结果
+        }
+    }
+
+    /**
+     * 异步执行, 在缺省的线程池中执行
+     *
+     * @param context context
+     * @param request request
+     * @return future
+     * @see BizExecutors#getDefaultExecutor()
+     */
+    public CompletableFuture<BizResult<R>> executeAsync(BizContext context, BizRequest<P> request) {
+        return executeAsync(context, request, BizExecutors.getDefaultExecutor());
+    }
+
+    /**
+     * 异步执行, 异常处理和 execute(context,request) 一致, BizException 转换为错误结果
+     * 多个节点并发执行时共享同一个 context, 需要注意 BizContext 不是线程安全的
+     *
+     * @param context  context
+     * @param request  request
+     * @param executor 执行的线程池
+     * @return future
+     */
+    public CompletableFuture<BizResult<R>> executeAsync(BizContext context, BizRequest<P> request, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> execute(context, request), executor);
     }
 
     /**
      * 验证参数 根据 validate
+     * 参数类字段上的 cn.mapway.biz.validation 注解在第一次调用时编译, 之后直接执行检查
      */
     protected void validateParameter(P parameter) {
         if (parameter == null) {
             throw BizException.get(500, "需要传入参数");
         }
+        ParamValidator.of(parameter.getClass()).validate(parameter);
     }
 
     /**
      * 检查参数是否为空
+     * 检查通过时不格式化消息. 需要模板参数时优先使用固定参数个数的重载, 不会分配参数数组;
+     * 消息本身需要计算时使用 {@link #assertNotNullLazy(Object, Supplier)}
      *
      * @param data            da
      * @param messageTemplate t
@@ -83,38 +177,202 @@ public abstract class AbstractBizExecutor<R, P> {
      */
     public void assertNotNull(Object data, String messageTemplate, String... values) {
         if (data == null) {
-
             throw BizException.get(500, formatMessage(messageTemplate, values));
         }
     }
 
     /**
-     * 检查参数是否为空
+     * 同 {@link #assertNotNull(Object, String, String...)}, 没有模板参数
+     */
+    public void assertNotNull(Object data, String message) {
+        if (data == null) {
+            throw BizException.get(500, formatMessage(message, null));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotNull(Object, String, String...)}, 一个模板参数
+     */
+    public void assertNotNull(Object data, String messageTemplate, String v0) {
+        if (data == null) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotNull(Object, String, String...)}, 两个模板参数
+     */
+    public void assertNotNull(Object data, String messageTemplate, String v0, String v1) {
+        if (data == null) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0, v1}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotNull(Object, String, String...)}, 三个模板参数
+     */
+    public void assertNotNull(Object data, String messageTemplate, String v0, String v1, String v2) {
+        if (data == null) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0, v1, v2}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotNull(Object, String, String...)}, 消息只在检查失败时由 message 生成
+     */
+    public void assertNotNullLazy(Object data, Supplier<String> message) {
+        if (data == null) {
+            throw BizException.get(500, formatMessage(message == null ? null : message.get(), null));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotNull(Object, String, String...)}, 失败时抛出业务代码对应的异常, 没有参数的已注册代码使用预先构造的异常
+     */
+    public void assertNotNullCode(Object data, IBizCode code) {
+        if (data == null) {
+            throw BizException.get(code);
+        }
+    }
+
+    /**
+     * 检查条件是否成立, null 视为不成立
+     * 检查通过时不格式化消息. 需要模板参数时优先使用固定参数个数的重载, 不会分配参数数组;
+     * 消息本身需要计算时使用 {@link #assertTrueLazy(Boolean, Supplier)}
      *
      * @param data            da
      * @param messageTemplate t
      * @param values          v
      */
     public void assertTrue(Boolean data, String messageTemplate, String... values) {
-        if (!data) {
+        if (!Boolean.TRUE.equals(data)) {
             throw BizException.get(500, formatMessage(messageTemplate, values));
         }
     }
 
+    /**
+     * 同 {@link #assertTrue(Boolean, String, String...)}, 没有模板参数
+     */
+    public void assertTrue(Boolean data, String message) {
+        if (!Boolean.TRUE.equals(data)) {
+            throw BizException.get(500, formatMessage(message, null));
+        }
+    }
+
+    /**
+     * 同 {@link #assertTrue(Boolean, String, String...)}, 一个模板参数
+     */
+    public void assertTrue(Boolean data, String messageTemplate, String v0) {
+        if (!Boolean.TRUE.equals(data)) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertTrue(Boolean, String, String...)}, 两个模板参数
+     */
+    public void assertTrue(Boolean data, String messageTemplate, String v0, String v1) {
+        if (!Boolean.TRUE.equals(data)) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0, v1}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertTrue(Boolean, String, String...)}, 三个模板参数
+     */
+    public void assertTrue(Boolean data, String messageTemplate, String v0, String v1, String v2) {
+        if (!Boolean.TRUE.equals(data)) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0, v1, v2}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertTrue(Boolean, String, String...)}, 消息只在检查失败时由 message 生成
+     */
+    public void assertTrueLazy(Boolean data, Supplier<String> message) {
+        if (!Boolean.TRUE.equals(data)) {
+            throw BizException.get(500, formatMessage(message == null ? null : message.get(), null));
+        }
+    }
+
+    /**
+     * 同 {@link #assertTrue(Boolean, String, String...)}, 失败时抛出业务代码对应的异常, 没有参数的已注册代码使用预先构造的异常
+     */
+    public void assertTrueCode(Boolean data, IBizCode code) {
+        if (!Boolean.TRUE.equals(data)) {
+            throw BizException.get(code);
+        }
+    }
 
     /**
      * 检查对象是否为空
+     * 检查通过时不格式化消息. 需要模板参数时优先使用固定参数个数的重载, 不会分配参数数组;
+     * 消息本身需要计算时使用 {@link #assertNotEmptyLazy(Object, Supplier)}
      *
      * @param data            da
      * @param messageTemplate t
      * @param values          v
      */
     public void assertNotEmpty(Object data, String messageTemplate, String... values) {
-        if (Lang.isEmpty(data)){
+        if (Lang.isEmpty(data)) {
             throw BizException.get(500, formatMessage(messageTemplate, values));
         }
     }
 
+    /**
+     * 同 {@link #assertNotEmpty(Object, String, String...)}, 没有模板参数
+     */
+    public void assertNotEmpty(Object data, String message) {
+        if (Lang.isEmpty(data)) {
+            throw BizException.get(500, formatMessage(message, null));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotEmpty(Object, String, String...)}, 一个模板参数
+     */
+    public void assertNotEmpty(Object data, String messageTemplate, String v0) {
+        if (Lang.isEmpty(data)) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotEmpty(Object, String, String...)}, 两个模板参数
+     */
+    public void assertNotEmpty(Object data, String messageTemplate, String v0, String v1) {
+        if (Lang.isEmpty(data)) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0, v1}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotEmpty(Object, String, String...)}, 三个模板参数
+     */
+    public void assertNotEmpty(Object data, String messageTemplate, String v0, String v1, String v2) {
+        if (Lang.isEmpty(data)) {
+            throw BizException.get(500, formatMessage(messageTemplate, new String[]{v0, v1, v2}));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotEmpty(Object, String, String...)}, 消息只在检查失败时由 message 生成
+     */
+    public void assertNotEmptyLazy(Object data, Supplier<String> message) {
+        if (Lang.isEmpty(data)) {
+            throw BizException.get(500, formatMessage(message == null ? null : message.get(), null));
+        }
+    }
+
+    /**
+     * 同 {@link #assertNotEmpty(Object, String, String...)}, 失败时抛出业务代码对应的异常, 没有参数的已注册代码使用预先构造的异常
+     */
+    public void assertNotEmptyCode(Object data, IBizCode code) {
+        if (Lang.isEmpty(data)) {
+            throw BizException.get(code);
+        }
+    }
+
     /**
      * 格式化消息
      *
@@ -129,7 +387,7 @@ public abstract class AbstractBizExecutor<R, P> {
         if (values == null || values.length == 0) {
             return messageTemplate;
         } else {
-            return MessageFormat.format(messageTemplate, values);
+            return MessageTemplate.format(messageTemplate, values);
         }
     }
 
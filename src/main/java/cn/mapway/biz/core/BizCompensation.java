@@ -0,0 +1,21 @@
+package cn.mapway.biz.core;
+
+/**
+ * 业务流节点的补偿操作
+ * 业务流中某个节点返回 BIZ_ROLLBACK 时, 已经执行完成的节点按照相反的顺序执行补偿
+ *
+ * @param <P> 请求的参数类型
+ * @author zhangjianshe
+ */
+@FunctionalInterface
+public interface BizCompensation<P> {
+
+    /**
+     * 撤销节点已经完成的操作
+     *
+     * @param context 业务流的上下文
+     * @param request 业务流的请求
+     * @param result  该节点执行的结果
+     */
+    void compensate(BizContext context, BizRequest<P> request, BizResult<?> result);
+}
@@ -1,10 +1,427 @@
 package cn.mapway.biz.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * 业务流处理的上下文
+ * <p>
+ * 通过 {@link ContextKey} 存取的值保存在数组中, 按照键的下标直接访问, 不需要计算字符串的哈希.
+ * 仍然实现了 Map 接口, 使用已经注册的键名访问和 ContextKey 访问的是同一个值,
+ * 没有注册的键名保存在一个按需创建的 HashMap 中.
+ * 键名是全局的, 通过 Map 接口放入的值和同名 ContextKey 的类型不一致时同样保存在 HashMap 中,
+ * Map 接口可以正常读取, 通过 ContextKey 读取时视为没有设置.
+ * <p>
+ * 上下文不是线程安全的
  */
-public class BizContext extends HashMap<String, Object> {
+public class BizContext extends AbstractMap<String, Object> implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 表示存放的值为 null
+     */
+    private static final Object NULL = new Object();
+    private static final Object[] EMPTY = new Object[0];
+    private static final Object NOT_MIGRATED = new Object();
+
+    private transient Object[] values;
+    private transient int slotCount;
+    private transient HashMap<String, Object> extras;
+    private transient Set<Entry<String, Object>> entrySet;
+
+    /**
+     *
+     */
+    public BizContext() {
+        int count = ContextKey.count();
+        values = count == 0 ? EMPTY : new Object[count];
+    }
+
+    /**
+     * 读取类型化的值
+     *
+     * @param key key
+     * @param <T> 值的类型
+     * @return 没有设置时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(ContextKey<T> key) {
+        int index = key.getIndex();
+        Object value = index < values.length ? values[index] : null;
+        if (value == null) {
+            if (extras == null) {
+                return null;
+            }
+            Object migrated = migrate(key);
+            return migrated == NOT_MIGRATED ? null : (T) migrated;
+        }
+        return value == NULL ? null : (T) value;
+    }
+
+    /**
+     * 读取类型化的值
+     *
+     * @param key          key
+     * @param defaultValue 没有设置时返回的值
+     * @param <T>          值的类型
+     * @return value
+     */
+    public <T> T getOrDefault(ContextKey<T> key, T defaultValue) {
+        return contains(key) ? get(key) : defaultValue;
+    }
+
+    /**
+     * 设置类型化的值
+     *
+     * @param key   key
+     * @param value value
+     * @param <T>   值的类型
+     * @return 原来的值
+     */
+    public <T> T put(ContextKey<T> key, T value) {
+        T old = get(key);
+        if (extras != null) {
+            // 同名的类型不一致的值
+            extras.remove(key.getName());
+        }
+        store(key.getIndex(), value);
+        return old;
+    }
+
+    /**
+     * 删除类型化的值
+     *
+     * @param key key
+     * @param <T> 值的类型
+     * @return 原来的值
+     */
+    public <T> T remove(ContextKey<T> key) {
+        T old = get(key);
+        removeName(key);
+        return old;
+    }
+
+    /**
+     * 是否设置了类型化的值
+     *
+     * @param key key
+     * @return boolean
+     */
+    public boolean contains(ContextKey<?> key) {
+        int index = key.getIndex();
+        if (index < values.length && values[index] != null) {
+            return true;
+        }
+        return extras != null && migrate(key) != NOT_MIGRATED;
+    }
+
+    /**
+     * 复制一个上下文
+     *
+     * @return 新的上下文
+     */
+    public BizContext copy() {
+        BizContext copy = new BizContext();
+        copy.putAll(this);
+        return copy;
+    }
+
+    @Override
+    public Object get(Object key) {
+        ContextKey<?> contextKey = ContextKey.lookup(key);
+        if (contextKey != null) {
+            int index = contextKey.getIndex();
+            Object value = index < values.length ? values[index] : null;
+            if (value != null) {
+                return value == NULL ? null : value;
+            }
+        }
+        return extras == null ? null : extras.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        ContextKey<?> contextKey = ContextKey.lookup(key);
+        if (contextKey != null) {
+            int index = contextKey.getIndex();
+            if (index < values.length && values[index] != null) {
+                return true;
+            }
+        }
+        return extras != null && extras.containsKey(key);
+    }
+
+    /**
+     * 类型和同名 ContextKey 一致的值保存在数组中, 不一致的保存在 HashMap 中
+     */
+    @Override
+    public Object put(String key, Object value) {
+        ContextKey<?> contextKey = ContextKey.lookup(key);
+        if (contextKey != null && (value == null || contextKey.getType().isInstance(value))) {
+            Object old = get(key);
+            if (extras != null) {
+                extras.remove(key);
+            }
+            store(contextKey.getIndex(), value);
+            return old;
+        }
+        Object old = contextKey == null ? null : removeName(contextKey);
+        if (extras == null) {
+            extras = new HashMap<>();
+        }
+        Object previous = extras.put(key, value);
+        return contextKey == null ? previous : old;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        ContextKey<?> contextKey = ContextKey.lookup(key);
+        if (contextKey != null) {
+            return removeName(contextKey);
+        }
+        return extras == null ? null : extras.remove(key);
+    }
+
+    @Override
+    public void putAll(Map<? extends String, ?> map) {
+        if (map instanceof BizContext) {
+            BizContext other = (BizContext) map;
+            Object[] source = other.values;
+            for (int i = 0; i < source.length; i++) {
+                if (source[i] != null) {
+                    if (extras != null) {
+                        extras.remove(ContextKey.nameOf(i));
+                    }
+                    store(i, source[i]);
+                }
+            }
+            if (other.extras != null && !other.extras.isEmpty()) {
+                if (extras == null && slotCount == 0) {
+                    extras = new HashMap<>(other.extras);
+                } else {
+                    for (Entry<String, Object> entry : other.extras.entrySet()) {
+                        put(entry.getKey(), entry.getValue());
+                    }
+                }
+            }
+            return;
+        }
+        super.putAll(map);
+    }
+
+    @Override
+    public int size() {
+        return slotCount + (extras == null ? 0 : extras.size());
+    }
+
+    @Override
+    public void clear() {
+        if (slotCount > 0) {
+            Arrays.fill(values, null);
+            slotCount = 0;
+        }
+        if (extras != null) {
+            extras.clear();
+        }
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    /**
+     * 键注册之前通过 Map 接口放入的同名值, 类型一致时移到数组中
+     *
+     * @return 移动的值, 没有同名值或者类型不一致时返回 NOT_MIGRATED
+     */
+    private Object migrate(ContextKey<?> key) {
+        if (!extras.containsKey(key.getName())) {
+            return NOT_MIGRATED;
+        }
+        Object value = extras.get(key.getName());
+        if (value != null && !key.getType().isInstance(value)) {
+            return NOT_MIGRATED;
+        }
+        extras.remove(key.getName());
+        store(key.getIndex(), value);
+        return value;
+    }
+
+    /**
+     * 删除键名对应的值, 不论保存在数组中还是 HashMap 中
+     */
+    private Object removeName(ContextKey<?> key) {
+        Object old = get(key.getName());
+        int index = key.getIndex();
+        if (index < values.length && values[index] != null) {
+            values[index] = null;
+            slotCount--;
+        }
+        if (extras != null) {
+            extras.remove(key.getName());
+        }
+        return old;
+    }
+
+    /**
+     * null 值使用 NULL 占位, 数组中的 null 表示没有设置
+     */
+    private void store(int index, Object value) {
+        if (index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(index + 1, ContextKey.count()));
+        }
+        if (values[index] == null) {
+            slotCount++;
+        }
+        values[index] = value == null ? NULL : value;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(new HashMap<>(this));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        values = EMPTY;
+        putAll((Map<String, Object>) in.readObject());
+    }
+
+    /**
+     * 先遍历数组中的值, 再遍历 HashMap 中的值
+     */
+    private class EntrySet extends AbstractSet<Entry<String, Object>> {
+        @Override
+        public Iterator<Entry<String, Object>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return BizContext.this.size();
+        }
+
+        @Override
+        public void clear() {
+            BizContext.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, Object>> {
+        private int next = advance(0);
+        private int current = -1;
+        private boolean currentInExtras;
+        private Iterator<Entry<String, Object>> extraIterator;
+
+        private int advance(int from) {
+            while (from < values.length && values[from] == null) {
+                from++;
+            }
+            return from;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < values.length) {
+                return true;
+            }
+            if (extraIterator == null) {
+                if (extras == null) {
+                    return false;
+                }
+                extraIterator = extras.entrySet().iterator();
+            }
+            return extraIterator.hasNext();
+        }
+
+        @Override
+        public Entry<String, Object> next() {
+            if (next < values.length) {
+                current = next;
+                next = advance(next + 1);
+                return new SlotEntry(current);
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = -1;
+            currentInExtras = true;
+            return extraIterator.next();
+        }
+
+        @Override
+        public void remove() {
+            if (current >= 0 && values[current] != null) {
+                values[current] = null;
+                slotCount--;
+                current = -1;
+            } else if (currentInExtras) {
+                extraIterator.remove();
+                currentInExtras = false;
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+
+    private class SlotEntry implements Entry<String, Object> {
+        private final int index;
+
+        SlotEntry(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public String getKey() {
+            return ContextKey.nameOf(index);
+        }
+
+        @Override
+        public Object getValue() {
+            Object value = values[index];
+            return value == NULL ? null : value;
+        }
+
+        @Override
+        public Object setValue(Object value) {
+            return put(getKey(), value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Entry)) {
+                return false;
+            }
+            Entry<?, ?> e = (Entry<?, ?>) o;
+            return getKey().equals(e.getKey()) && Objects.equals(getValue(), e.getValue());
+        }
+
+        @Override
+        public int hashCode() {
+            Object value = getValue();
+            return getKey().hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return getKey() + "=" + getValue();
+        }
+    }
 }
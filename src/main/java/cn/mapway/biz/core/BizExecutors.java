@@ -0,0 +1,167 @@
+package cn.mapway.biz.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 业务节点异步执行使用的线程池
+ * <p>
+ * 缺省使用固定大小的守护线程池, 大小由系统属性 biz.executor.threads 指定, 缺省为 CPU 核数的 4 倍.
+ * 运行在 JDK 21 以上时, 可以通过 {@link #useVirtualThreads()} 或者系统属性 biz.executor.virtual=true
+ * 切换到虚拟线程, 每个任务一个虚拟线程.
+ *
+ * @author zhangjianshe
+ */
+public final class BizExecutors {
+
+    /**
+     * 线程池大小的系统属性
+     */
+    public static final String PROPERTY_THREADS = "biz.executor.threads";
+    /**
+     * 是否使用虚拟线程的系统属性
+     */
+    public static final String PROPERTY_VIRTUAL = "biz.executor.virtual";
+
+    private static volatile ExecutorService defaultExecutor;
+
+    /**
+     * BizExecutors 自己创建的缺省线程池, 被替换时由 BizExecutors 关闭
+     */
+    private static ExecutorService ownedExecutor;
+
+    private BizExecutors() {
+    }
+
+    /**
+     * 获取缺省的线程池,第一次使用的时候创建
+     *
+     * @return executor
+     */
+    public static ExecutorService getDefaultExecutor() {
+        ExecutorService executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (BizExecutors.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    executor = createDefaultExecutor();
+                    defaultExecutor = executor;
+                    ownedExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 替换缺省的线程池
+     * 原来的线程池不会被关闭, 由调用者决定是否关闭, 包括 BizExecutors 自己创建的线程池
+     *
+     * @param executor executor
+     * @return 原来的线程池, 还没有创建过时返回 null
+     */
+    public static ExecutorService setDefaultExecutor(ExecutorService executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor 不能为空");
+        }
+        synchronized (BizExecutors.class) {
+            ExecutorService previous = defaultExecutor;
+            defaultExecutor = executor;
+            ownedExecutor = null;
+            return previous;
+        }
+    }
+
+    /**
+     * 缺省线程池切换为虚拟线程
+     * 原来的线程池是 BizExecutors 创建的, 调用 shutdown 关闭, 已经提交的任务继续执行完;
+     * 通过 setDefaultExecutor 设置的线程池不会被关闭
+     *
+     * @return 当前 JDK 不支持虚拟线程时返回 false, 缺省线程池保持不变
+     */
+    public static boolean useVirtualThreads() {
+        ExecutorService executor = newVirtualThreadExecutor();
+        if (executor == null) {
+            return false;
+        }
+        ExecutorService previous;
+        synchronized (BizExecutors.class) {
+            previous = ownedExecutor;
+            defaultExecutor = executor;
+            ownedExecutor = executor;
+        }
+        if (previous != null) {
+            previous.shutdown();
+        }
+        return true;
+    }
+
+    /**
+     * 当前 JDK 是否支持虚拟线程
+     *
+     * @return boolean
+     */
+    public static boolean isVirtualThreadSupported() {
+        return virtualThreadFactoryMethod() != null;
+    }
+
+    /**
+     * 创建每个任务一个虚拟线程的线程池
+     *
+     * @return 当前 JDK 不支持虚拟线程时返回 null
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        Method method = virtualThreadFactoryMethod();
+        if (method == null) {
+            return null;
+        }
+        try {
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 创建固定大小的守护线程池
+     *
+     * @param threads 线程数量
+     * @return executor
+     */
+    public static ExecutorService newFixedExecutor(int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "biz-executor-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+
+    /**
+     * 按系统属性创建缺省的线程池
+     *
+     * @return executor
+     */
+    static ExecutorService createDefaultExecutor() {
+        if (Boolean.getBoolean(PROPERTY_VIRTUAL)) {
+            ExecutorService executor = newVirtualThreadExecutor();
+            if (executor != null) {
+                return executor;
+            }
+        }
+        int threads = Integer.getInteger(PROPERTY_THREADS, Runtime.getRuntime().availableProcessors() * 4);
+        return newFixedExecutor(Math.max(1, threads));
+    }
+
+    private static Method virtualThreadFactoryMethod() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
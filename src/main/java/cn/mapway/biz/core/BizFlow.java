@@ -0,0 +1,267 @@
+package cn.mapway.biz.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 业务流
+ * 将多个业务节点组合在一起执行, 所有节点共享同一个 BizContext 和 BizRequest
+ * <pre>
+ * BizFlow&lt;OrderParam&gt; flow = BizFlow.&lt;OrderParam&gt;create()
+ *         .then(checkExecutor)
+ *         .then(lockStockExecutor, (context, request, result) -&gt; unlockStock(request))
+ *         .parallel(priceExecutor, couponExecutor)
+ *         .then(saveExecutor);
+ * BizResult&lt;Object&gt; result = flow.execute(new BizContext(), BizRequest.wrap("order", param));
+ * </pre>
+ * 每个节点执行完成以后根据结果的 flowOperator 决定后续操作
+ * <ul>
+ * <li>BIZ_CONTINUE 继续执行下一个节点, 失败节点的错误代码记录在最终结果的 errorList 中</li>
+ * <li>BIZ_BREAK 终止业务流, 返回该节点的结果</li>
+ * <li>BIZ_ROLLBACK 终止业务流, 已经完成的节点按照相反的顺序执行补偿, 返回该节点的结果</li>
+ * </ul>
+ * 节点返回 null 时按照失败处理, 错误代码为 500.
+ * 并行阶段中的节点并发执行, 每个节点使用上下文的副本, 全部完成以后把每个节点相对阶段开始时的修改
+ * (设置和删除) 按照声明顺序合并回共享的上下文, 节点没有改动的键不会覆盖其他节点的修改.
+ *
+ * @param <P> 请求的参数类型
+ * @author zhangjianshe
+ */
+public class BizFlow<P> {
+
+    private final List<List<Node<P>>> stages = new ArrayList<>();
+    private Executor executor;
+
+    /**
+     * 创建业务流
+     *
+     * @param <P> 请求的参数类型
+     * @return flow
+     */
+    public static <P> BizFlow<P> create() {
+        return new BizFlow<>();
+    }
+
+    /**
+     * 追加一个顺序执行的节点
+     *
+     * @param node 业务节点
+     * @return this
+     */
+    public BizFlow<P> then(AbstractBizExecutor<?, P> node) {
+        return then(node, null);
+    }
+
+    /**
+     * 追加一个顺序执行的节点
+     *
+     * @param node         业务节点
+     * @param compensation 回滚时的补偿操作, 可以为 null
+     * @return this
+     */
+    public BizFlow<P> then(AbstractBizExecutor<?, P> node, BizCompensation<P> compensation) {
+        stages.add(Collections.singletonList(new Node<>(node, compensation)));
+        return this;
+    }
+
+    /**
+     * 追加一个并行执行的阶段, 阶段内的节点相互独立
+     *
+     * @param nodes 业务节点
+     * @return this
+     */
+    @SafeVarargs
+    public final BizFlow<P> parallel(AbstractBizExecutor<?, P>... nodes) {
+        List<Node<P>> stage = new ArrayList<>(nodes.length);
+        for (AbstractBizExecutor<?, P> node : nodes) {
+            stage.add(new Node<>(node, null));
+        }
+        stages.add(stage);
+        return this;
+    }
+
+    /**
+     * 为业务流中的节点设置补偿操作, 用于并行阶段中的节点
+     *
+     * @param node         业务流中的节点
+     * @param compensation 回滚时的补偿操作
+     * @return this
+     */
+    public BizFlow<P> compensate(AbstractBizExecutor<?, P> node, BizCompensation<P> compensation) {
+        for (List<Node<P>> stage : stages) {
+            for (Node<P> item : stage) {
+                if (item.executor == node) {
+                    item.compensation = compensation;
+                    return this;
+                }
+            }
+        }
+        throw new IllegalArgumentException("业务流中没有该节点 " + node.getClass().getName());
+    }
+
+    /**
+     * 并行阶段使用的线程池, 缺省为 {@link BizExecutors#getDefaultExecutor()}
+     *
+     * @param executor executor
+     * @return this
+     */
+    public BizFlow<P> executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * 执行业务流
+     *
+     * @param context 共享的上下文
+     * @param request 请求
+     * @return 最后一个执行节点的结果
+     */
+    public BizResult<Object> execute(BizContext context, BizRequest<P> request) {
+        List<Completed<P>> completed = new ArrayList<>();
+        List<BizResult<?>> failed = new ArrayList<>();
+        BizResult<?> last = new BizResult<>();
+        for (List<Node<P>> stage : stages) {
+            List<BizResult<?>> results = stage.size() == 1
+                    ? Collections.singletonList(nonNull(stage.get(0), stage.get(0).executor.execute(context, request)))
+                    : runParallel(stage, context, request);
+
+            BizResult<?> stop = null;
+            for (int i = 0; i < results.size(); i++) {
+                BizResult<?> result = results.get(i);
+                if (result.needRollback() || result.needBreak()) {
+                    if (stop == null) {
+                        stop = result;
+                    }
+                } else {
+                    completed.add(new Completed<>(stage.get(i), result));
+                    if (result.isFailed()) {
+                        failed.add(result);
+                    }
+                }
+                last = result;
+            }
+
+            if (stop != null) {
+                if (stop.needRollback()) {
+                    rollback(completed, context, request);
+                }
+                return finish(stop, failed);
+            }
+        }
+        return finish(last, failed);
+    }
+
+    private List<BizResult<?>> runParallel(List<Node<P>> stage, BizContext context, BizRequest<P> request) {
+        Executor pool = executor == null ? BizExecutors.getDefaultExecutor() : executor;
+        Map<String, Object> snapshot = new HashMap<>(context);
+        List<BizContext> contexts = new ArrayList<>(stage.size());
+        List<CompletableFuture<? extends BizResult<?>>> futures = new ArrayList<>(stage.size());
+        for (Node<P> node : stage) {
+            BizContext copy = context.copy();
+            contexts.add(copy);
+            futures.add(node.executor.executeAsync(copy, request, pool));
+        }
+        List<BizResult<?>> results = new ArrayList<>(stage.size());
+        for (int i = 0; i < futures.size(); i++) {
+            results.add(nonNull(stage.get(i), futures.get(i).join()));
+            merge(context, snapshot, contexts.get(i));
+        }
+        return results;
+    }
+
+    /**
+     * 只合并节点相对快照的修改
+     */
+    private static void merge(BizContext context, Map<String, Object> snapshot, BizContext copy) {
+        for (Map.Entry<String, Object> entry : copy.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (!snapshot.containsKey(key) || snapshot.get(key) != value) {
+                context.put(key, value);
+            }
+        }
+        for (String key : snapshot.keySet()) {
+            if (!copy.containsKey(key)) {
+                context.remove(key);
+            }
+        }
+    }
+
+    private static BizResult<?> nonNull(Node<?> node, BizResult<?> result) {
+        if (result != null) {
+            return result;
+        }
+        return BizResult.error(500, node.executor.getClass().getName() + " 没有返回结果");
+    }
+
+    private void rollback(List<Completed<P>> completed, BizContext context, BizRequest<P> request) {
+        for (int i = completed.size() - 1; i >= 0; i--) {
+            Completed<P> item = completed.get(i);
+            if (item.node.compensation != null) {
+                item.node.compensation.compensate(context, request, item.result);
+            }
+        }
+    }
+
+    /**
+     * 节点返回的结果可能被缓存共享 (例如 {@link CachingBizExecutor}), 需要附加错误时复制一份再修改
+     */
+    private BizResult<Object> finish(BizResult<?> result, List<BizResult<?>> failed) {
+        BizResult<Object> target = null;
+        for (BizResult<?> item : failed) {
+            if (item != result) {
+                if (target == null) {
+                    target = copyOf(result);
+                }
+                target.addError(item.getBizCode());
+            }
+        }
+        return target == null ? result.asBizResult() : target;
+    }
+
+    private static BizResult<Object> copyOf(BizResult<?> result) {
+        BizResult<Object> copy = new BizResult<>();
+        copy.setCode(result.getCode());
+        copy.setMessage(result.getMessage());
+        copy.setFlowOperator(result.getFlowOperator());
+        copy.setData(result.getData());
+        copy.setListInfo(result.getTotal(), result.getCurrent(), result.getPageSize());
+        copy.setCursor(result.getCursor());
+        if (result.getErrorList() != null && !result.getErrorList().isEmpty()) {
+            copy.setErrorList(new ArrayList<>(result.getErrorList()));
+        }
+        return copy;
+    }
+
+    /**
+     * 业务流中的节点
+     */
+    private static class Node<P> {
+        final AbstractBizExecutor<?, P> executor;
+        BizCompensation<P> compensation;
+
+        Node(AbstractBizExecutor<?, P> executor, BizCompensation<P> compensation) {
+            this.executor = executor;
+            this.compensation = compensation;
+        }
+    }
+
+    /**
+     * 已经完成的节点
+     */
+    private static class Completed<P> {
+        final Node<P> node;
+        final BizResult<?> result;
+
+        Completed(Node<P> node, BizResult<?> result) {
+            this.node = node;
+            this.result = result;
+        }
+    }
+}
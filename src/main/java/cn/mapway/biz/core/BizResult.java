@@ -6,6 +6,7 @@ import cn.mapway.biz.api.ApiResult;
 import cn.mapway.biz.api.SystemCodeEnum;
 import cn.mapway.biz.constant.BizCode;
 import cn.mapway.biz.constant.IBizCode;
+import cn.mapway.biz.constant.MessageTemplate;
 import cn.mapway.biz.exception.BizException;
 import lombok.Data;
 import lombok.Getter;
@@ -23,6 +24,11 @@ import java.util.Objects;
 @Getter
 @Setter
 public class BizResult<T> implements Serializable {
+    /**
+     * 预先绑定好的成功代码,成功的结果共享这个对象
+     */
+    private static final IBizCode SUCCESS_CODE = new BizCode(SystemCodeEnum.SUCCESS.getCode(), SystemCodeEnum.SUCCESS.getMessage());
+
     private Integer code;
     private String message;
     private List<IBizCode> errorList;
@@ -31,12 +37,21 @@ public class BizResult<T> implements Serializable {
     private long total;
     private long current;
     private long pageSize;
+    /**
+     * 游标分页时下一页的游标, 没有更多数据时为 null
+     */
+    private String cursor;
 
     /**
      * 构造一个默认成功的操作结果,缺省继续执行下一个节点
      */
     public BizResult() {
-        this(SystemCodeEnum.SUCCESS);
+        flowOperator = BizFlowOperator.BIZ_CONTINUE;
+        this.code = SUCCESS_CODE.getCode();
+        this.message = SUCCESS_CODE.getMessage();
+        total = 0L;
+        current = 1;
+        pageSize = 10;
     }
 
     /**
@@ -45,7 +60,6 @@ public class BizResult<T> implements Serializable {
      */
     public BizResult(IBizCode bizCode, String... messages) {
         flowOperator = BizFlowOperator.BIZ_CONTINUE;
-        setErrorList(null);
         result(bizCode, messages);
         total = 0L;
         current = 1;
@@ -58,7 +72,6 @@ public class BizResult<T> implements Serializable {
      */
     public BizResult(Integer code, String message) {
         flowOperator = BizFlowOperator.BIZ_CONTINUE;
-        setErrorList(null);
         this.code = code;
         this.message = message;
         total = 0L;
@@ -95,7 +108,7 @@ public class BizResult<T> implements Serializable {
      * @return data
      */
     public static <T> BizResult<T> success(T data) {
-        BizResult<T> result = new BizResult<T>(SystemCodeEnum.SUCCESS);
+        BizResult<T> result = new BizResult<T>();
         result.setData(data);
         return result;
     }
@@ -107,7 +120,7 @@ public class BizResult<T> implements Serializable {
      * @return data
      */
     public static <T> BizResult<List<T>> emptyList() {
-        BizResult<List<T>> result = new BizResult<>(SystemCodeEnum.SUCCESS);
+        BizResult<List<T>> result = new BizResult<>();
         result.setListInfo(0l, 1l, 100l);
         result.setData(new ArrayList<>());
         return result;
@@ -145,6 +158,7 @@ public class BizResult<T> implements Serializable {
         result.setPageSize(pageSize);
         result.setTotal(total);
         result.setPage(current);
+        result.setCursor(cursor);
         return result;
     }
 
@@ -167,14 +181,23 @@ public class BizResult<T> implements Serializable {
      */
     public void result(IBizCode bizError, String... messages) {
         this.code = bizError.getCode();
-        this.message = bizError.bind(messages).getMessage();
+        if (messages == null || messages.length == 0) {
+            this.message = MessageTemplate.format(bizError.getMessage());
+        } else {
+            this.message = bizError.bind(messages).getMessage();
+        }
     }
 
 
     /**
+     * 成功的结果返回共享的成功代码
+     *
      * @return IBizCode
      */
     public IBizCode getBizCode() {
+        if (Objects.equals(code, SUCCESS_CODE.getCode()) && Objects.equals(message, SUCCESS_CODE.getMessage())) {
+            return SUCCESS_CODE;
+        }
         return new BizCode(this.getCode(), this.getMessage());
     }
 
@@ -183,7 +206,8 @@ public class BizResult<T> implements Serializable {
      * @return BizResult
      */
     public BizResult success() {
-        result(SystemCodeEnum.SUCCESS);
+        this.code = SUCCESS_CODE.getCode();
+        this.message = SUCCESS_CODE.getMessage();
         return this;
     }
 
@@ -237,13 +261,23 @@ public class BizResult<T> implements Serializable {
     }
 
 
+    /**
+     * 错误列表在第一次使用的时候创建
+     *
+     * @return error list
+     */
+    public List<IBizCode> getErrorList() {
+        if (errorList == null) {
+            errorList = new ArrayList<>();
+        }
+        return errorList;
+    }
+
     /**
      * @param errorList error list
      */
     public void setErrorList(List<IBizCode> errorList) {
-        if (null == errorList) {
-            this.errorList = new ArrayList<>();
-        }
+        this.errorList = errorList;
     }
 
 
@@ -251,7 +285,7 @@ public class BizResult<T> implements Serializable {
      * @param bizError bizErrror
      */
     public void addError(IBizCode bizError) {
-        this.errorList.add(bizError);
+        getErrorList().add(bizError);
     }
 
 
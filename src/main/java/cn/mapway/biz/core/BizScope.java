@@ -0,0 +1,226 @@
+package cn.mapway.biz.core;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 业务上下文的作用域
+ * 从当前线程的上下文池中获取一个 BizContext, 关闭的时候清空并归还到池中
+ * <pre>
+ * try (BizScope scope = BizScope.open()) {
+ *     BizResult&lt;User&gt; result = executor.execute(scope.context(), request);
+ * }
+ * </pre>
+ * 作用域打开期间 {@link AbstractBizExecutor#execute(BizRequest)} 使用作用域的上下文,
+ * 不再使用不会释放的线程变量. 作用域可以嵌套, 内层作用域必须先关闭.
+ * 作用域关闭以后不能再使用它的上下文, 上下文会被其他请求复用.
+ * <p>
+ * 线程池的线程在请求结束时可以调用 {@link #closeAll()}, 没有关闭的作用域计入泄漏数量.
+ * <p>
+ * 当前线程只弱引用打开的作用域, 作用域由调用者持有. 调用者丢弃了没有关闭的作用域时,
+ * 作用域被垃圾回收以后不再是当前作用域, 同样计入泄漏数量, 它的上下文不会归还到池中.
+ *
+ * @author zhangjianshe
+ */
+public final class BizScope implements AutoCloseable {
+
+    /**
+     * 每个线程缓存的上下文数量的系统属性
+     */
+    public static final String PROPERTY_POOL_SIZE = "biz.scope.pool.size";
+
+    private static final int POOL_SIZE = Math.max(0, Integer.getInteger(PROPERTY_POOL_SIZE, 4));
+
+    private static final ThreadLocal<ArrayDeque<BizContext>> POOL = ThreadLocal.withInitial(() -> new ArrayDeque<>(POOL_SIZE));
+    private static final ThreadLocal<Link> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 没有关闭就被垃圾回收的作用域, 正常关闭的作用域会清除引用, 不会进入这个队列
+     */
+    private static final ReferenceQueue<BizScope> COLLECTED = new ReferenceQueue<>();
+
+    private static final LongAdder ACQUIRED = new LongAdder();
+    private static final LongAdder RELEASED = new LongAdder();
+    private static final LongAdder CREATED = new LongAdder();
+    private static final LongAdder LEAKED = new LongAdder();
+    private static final LongAdder LOST = new LongAdder();
+
+    private final BizContext context;
+    private final Link link;
+    private final Thread owner;
+    private boolean closed;
+
+    private BizScope(BizContext context, BizScope parent) {
+        this.context = context;
+        this.link = new Link(this, parent == null ? null : parent.link);
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * 线程变量中的作用域链, 弱引用作用域, 强引用外层的链
+     */
+    private static final class Link extends WeakReference<BizScope> {
+        final Link parent;
+
+        Link(BizScope scope, Link parent) {
+            super(scope, COLLECTED);
+            this.parent = parent;
+        }
+    }
+
+    /**
+     * 打开一个作用域
+     *
+     * @return scope
+     */
+    public static BizScope open() {
+        expunge();
+        BizContext context = POOL.get().pollFirst();
+        if (context == null) {
+            context = new BizContext();
+            CREATED.increment();
+        }
+        ACQUIRED.increment();
+        BizScope scope = new BizScope(context, current());
+        CURRENT.set(scope.link);
+        return scope;
+    }
+
+    /**
+     * 当前线程打开的作用域
+     *
+     * @return 没有打开的作用域时返回 null
+     */
+    public static BizScope current() {
+        Link link = CURRENT.get();
+        while (link != null) {
+            BizScope scope = link.get();
+            if (scope != null && !scope.closed) {
+                return scope;
+            }
+            link = link.parent;
+        }
+        return null;
+    }
+
+    /**
+     * 关闭当前线程所有打开的作用域, 这些作用域计入泄漏数量
+     *
+     * @return 关闭的作用域数量
+     */
+    public static int closeAll() {
+        int count = 0;
+        BizScope scope = current();
+        while (scope != null) {
+            LEAKED.increment();
+            scope.release();
+            count++;
+            scope = current();
+        }
+        CURRENT.remove();
+        return count;
+    }
+
+    /**
+     * @return 作用域的上下文
+     */
+    public BizContext context() {
+        if (closed) {
+            throw new IllegalStateException("BizScope 已经关闭");
+        }
+        return context;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() == owner) {
+            // 没有关闭的内层作用域
+            BizScope scope = current();
+            while (scope != null && scope != this) {
+                LEAKED.increment();
+                scope.release();
+                scope = current();
+            }
+        }
+        release();
+    }
+
+    private void release() {
+        closed = true;
+        link.clear();
+        RELEASED.increment();
+        context.clear();
+        if (Thread.currentThread() != owner) {
+            return;
+        }
+        BizScope active = current();
+        if (active == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(active.link);
+        }
+        ArrayDeque<BizContext> pool = POOL.get();
+        if (pool.size() < POOL_SIZE) {
+            pool.offerFirst(context);
+        }
+    }
+
+    /**
+     * 统计没有关闭就被垃圾回收的作用域
+     */
+    private static void expunge() {
+        while (COLLECTED.poll() != null) {
+            LEAKED.increment();
+            LOST.increment();
+        }
+    }
+
+    /**
+     * @return 获取作用域的次数
+     */
+    public static long getAcquiredCount() {
+        return ACQUIRED.sum();
+    }
+
+    /**
+     * @return 关闭作用域的次数
+     */
+    public static long getReleasedCount() {
+        return RELEASED.sum();
+    }
+
+    /**
+     * @return 新创建上下文的次数, 其余的获取都复用了池中的上下文
+     */
+    public static long getCreatedCount() {
+        return CREATED.sum();
+    }
+
+    /**
+     * @return 复用池中上下文的次数
+     */
+    public static long getReusedCount() {
+        return Math.max(0, ACQUIRED.sum() - CREATED.sum());
+    }
+
+    /**
+     * @return 目前还没有关闭的作用域数量
+     */
+    public static long getUnreleasedCount() {
+        expunge();
+        return Math.max(0, ACQUIRED.sum() - RELEASED.sum() - LOST.sum());
+    }
+
+    /**
+     * @return 没有按顺序关闭, 被外层作用域或者 closeAll 回收, 以及没有关闭就被垃圾回收的作用域数量
+     */
+    public static long getLeakedCount() {
+        expunge();
+        return LEAKED.sum();
+    }
+}
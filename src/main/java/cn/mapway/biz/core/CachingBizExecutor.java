@@ -0,0 +1,381 @@
+package cn.mapway.biz.core;
+
+import cn.mapway.biz.constant.IBizCode;
+import cn.mapway.biz.metrics.LatencyHistogram;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 缓存业务结果的执行器
+ * 包装一个结果只依赖 bizType 和 data 的执行器 (纯查询), 以 bizType + data 为键缓存 BizResult.
+ * <ul>
+ * <li>缺省只缓存成功的结果, 通过 {@link #cacheErrors(long, TimeUnit, IBizCode...)} 缓存指定的错误代码</li>
+ * <li>同一个键同时只有一个线程调用被包装的执行器, 其他线程等待并共享这次的结果</li>
+ * <li>超过 maxSize 时先清除过期的结果, 仍然超过时按 ConcurrentHashMap 的遍历顺序淘汰已完成的结果,
+ * 不是按最近最少使用淘汰</li>
+ * <li>指标和异常报告使用被包装执行器的类型</li>
+ * </ul>
+ * 缓存的结果被所有调用者共享, 调用者不能修改返回的 BizResult, {@link BizFlow} 附加错误时修改的是结果的副本.
+ * 缺省只能以 String 数字 枚举等不可变的 data 作为缓存键, 其他参数 (例如可以修改的 BizParam)
+ * 必须通过 {@link #keyBy(Function)} 从 data 计算出不可变的缓存键, 否则执行时抛出 IllegalStateException
+ * <pre>
+ * CachingBizExecutor&lt;User, UserQuery&gt; executor = new CachingBizExecutor&lt;&gt;(new QueryUserExecutor(), 30, TimeUnit.SECONDS, 10000)
+ *         .keyBy(UserQuery::getUserId)
+ *         .cacheErrors(5, TimeUnit.SECONDS, UserCode.NOT_FOUND);
+ * </pre>
+ *
+ * @param <R> 返回值的数据类型
+ * @param <P> 请求的参数类型
+ * @author zhangjianshe
+ */
+public class CachingBizExecutor<R, P> extends AbstractBizExecutor<R, P> {
+
+    private static final Set<Class<?>> IMMUTABLE_KEYS = new HashSet<>(Arrays.asList(String.class, Integer.class,
+            Long.class, Short.class, Byte.class, Character.class, Boolean.class, Double.class, Float.class,
+            BigInteger.class, BigDecimal.class));
+
+    private final AbstractBizExecutor<R, P> delegate;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final ConcurrentHashMap<Key, Entry<R>> cache = new ConcurrentHashMap<>();
+
+    private volatile Set<Integer> errorCodes = Collections.emptySet();
+    private volatile long errorTtlNanos;
+    private volatile Function<? super P, ?> keyFunction = CachingBizExecutor::immutableKey;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LatencyHistogram loadTimes = new LatencyHistogram();
+
+    /**
+     * @param delegate 被包装的执行器
+     * @param ttl      成功结果的有效期
+     * @param unit     有效期单位
+     * @param maxSize  最多缓存的结果数量
+     */
+    public CachingBizExecutor(AbstractBizExecutor<R, P> delegate, long ttl, TimeUnit unit, int maxSize) {
+        if (delegate == null) {
+            throw new IllegalArgumentException("delegate 不能为空");
+        }
+        if (ttl <= 0 || maxSize <= 0) {
+            throw new IllegalArgumentException("ttl 和 maxSize 必须大于 0");
+        }
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * 缓存指定的错误结果 (负缓存)
+     *
+     * @param ttl   错误结果的有效期
+     * @param unit  有效期单位
+     * @param codes 需要缓存的错误代码, 按 code 匹配
+     * @return this
+     */
+    public CachingBizExecutor<R, P> cacheErrors(long ttl, TimeUnit unit, IBizCode... codes) {
+        Set<Integer> set = new HashSet<>();
+        for (IBizCode code : codes) {
+            set.add(code.getCode());
+        }
+        this.errorTtlNanos = unit.toNanos(Math.max(0, ttl));
+        this.errorCodes = Collections.unmodifiableSet(set);
+        return this;
+    }
+
+    /**
+     * 指定缓存键, 缺省只接受不可变的 data 本身
+     *
+     * @param keyFunction 从 data 计算缓存键, 返回值需要实现 equals 和 hashCode, 并且之后不再修改
+     * @return this
+     */
+    public CachingBizExecutor<R, P> keyBy(Function<? super P, ?> keyFunction) {
+        this.keyFunction = keyFunction == null ? CachingBizExecutor::immutableKey : keyFunction;
+        cache.clear();
+        return this;
+    }
+
+    /**
+     * 缺省的缓存键, 只接受不可变的值. 缓存键会一直保存在缓存中, 调用者之后修改参数会破坏缓存
+     */
+    private static Object immutableKey(Object data) {
+        if (data == null || data instanceof Enum || IMMUTABLE_KEYS.contains(data.getClass())) {
+            return data;
+        }
+        throw new IllegalStateException(data.getClass().getName() + " 可能被修改, 请通过 keyBy 指定不可变的缓存键");
+    }
+
+    /**
+     * 指标和异常报告使用被包装执行器的类型
+     */
+    @Override
+    protected Class<?> getMetricsType() {
+        return delegate.getMetricsType();
+    }
+
+    /**
+     * 参数校验交给被包装的执行器
+     */
+    @Override
+    protected void validateParameter(P parameter) {
+        delegate.validateParameter(parameter);
+    }
+
+    /**
+     * 命中时直接返回缓存的结果, 否则调用被包装的执行器.
+     * 等待其他线程加载时, 使用的是那个线程的 context
+     */
+    @Override
+    protected BizResult<R> process(BizContext context, BizRequest<P> bizParam) {
+        Key key = new Key(bizParam.getBizType(), keyFunction.apply(bizParam.getData()));
+        while (true) {
+            Entry<R> entry = cache.get(key);
+            if (entry != null) {
+                if (!entry.future.isDone()) {
+                    waits.increment();
+                    return await(entry);
+                }
+                if (System.nanoTime() - entry.expireAt < 0) {
+                    hits.increment();
+                    return entry.future.getNow(null);
+                }
+                cache.remove(key, entry);
+                continue;
+            }
+            Entry<R> created = new Entry<>();
+            if (cache.putIfAbsent(key, created) == null) {
+                misses.increment();
+                return load(context, bizParam, key, created);
+            }
+        }
+    }
+
+    private BizResult<R> load(BizContext context, BizRequest<P> bizParam, Key key, Entry<R> entry) {
+        long start = System.nanoTime();
+        BizResult<R> result;
+        try {
+            result = delegate.process(context, bizParam);
+        } catch (RuntimeException | Error e) {
+            loadTimes.recordNanos(System.nanoTime() - start);
+            loadFailures.increment();
+            cache.remove(key, entry);
+            entry.future.completeExceptionally(e);
+            throw e;
+        }
+        long now = System.nanoTime();
+        loadTimes.recordNanos(now - start);
+        long ttl = ttl(result);
+        if (ttl > 0) {
+            entry.expireAt = now + ttl;
+            entry.future.complete(result);
+            if (cache.size() > maxSize) {
+                evict(now);
+            }
+        } else {
+            cache.remove(key, entry);
+            entry.future.complete(result);
+        }
+        return result;
+    }
+
+    private long ttl(BizResult<R> result) {
+        if (result == null || result.getCode() == null) {
+            return 0;
+        }
+        if (Boolean.TRUE.equals(result.isSuccess())) {
+            return ttlNanos;
+        }
+        return errorCodes.contains(result.getCode()) ? errorTtlNanos : 0;
+    }
+
+    private BizResult<R> await(Entry<R> entry) {
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 清除过期的结果, 仍然超过上限时按遍历顺序淘汰已完成的结果直到 3/4.
+     * 遍历顺序由哈希决定, 和访问时间无关
+     */
+    private void evict(long now) {
+        Iterator<Map.Entry<Key, Entry<R>>> iterator = cache.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry<R> entry = iterator.next().getValue();
+            if (entry.future.isDone() && now - entry.expireAt >= 0) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+        int target = maxSize - maxSize / 4;
+        iterator = cache.entrySet().iterator();
+        while (cache.size() > target && iterator.hasNext()) {
+            if (iterator.next().getValue().future.isDone()) {
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    /**
+     * 清除一个请求的缓存结果
+     *
+     * @param request 请求
+     */
+    public void invalidate(BizRequest<P> request) {
+        cache.remove(new Key(request.getBizType(), keyFunction.apply(request.getData())));
+    }
+
+    /**
+     * 清除所有缓存结果
+     */
+    public void invalidateAll() {
+        cache.clear();
+    }
+
+    /**
+     * @return 被包装的执行器
+     */
+    public AbstractBizExecutor<R, P> getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return 缓存中的结果数量, 包括正在加载的
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return 直接命中的次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 等待其他线程加载同一个键的次数
+     */
+    public long getWaitCount() {
+        return waits.sum();
+    }
+
+    /**
+     * @return 调用被包装执行器的次数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 被包装执行器抛出异常的次数
+     */
+    public long getLoadFailureCount() {
+        return loadFailures.sum();
+    }
+
+    /**
+     * @return 过期或者超过上限被淘汰的数量
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * 命中率, 等待其他线程加载的请求也算命中
+     *
+     * @return 0 到 1, 没有请求时为 0
+     */
+    public double getHitRatio() {
+        long hit = hits.sum() + waits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    /**
+     * @return 加载耗时的直方图
+     */
+    public LatencyHistogram getLoadTimes() {
+        return loadTimes;
+    }
+
+    /**
+     * 清零统计
+     */
+    public void resetStatistics() {
+        hits.reset();
+        waits.reset();
+        misses.reset();
+        loadFailures.reset();
+        evictions.reset();
+        loadTimes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CachingBizExecutor[" + delegate.getClass().getName() + "] size=" + cache.size()
+                + " hit=" + getHitCount() + " wait=" + getWaitCount() + " miss=" + getMissCount()
+                + " meanLoad=" + loadTimes.getMeanMicros() + "us";
+    }
+
+    private static final class Key {
+        final String bizType;
+        final Object data;
+        final int hash;
+
+        Key(String bizType, Object data) {
+            this.bizType = bizType;
+            this.data = data;
+            this.hash = 31 * Objects.hashCode(bizType) + Objects.hashCode(data);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && Objects.equals(bizType, other.bizType) && Objects.equals(data, other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry<R> {
+        final CompletableFuture<BizResult<R>> future = new CompletableFuture<>();
+        volatile long expireAt;
+    }
+}
@@ -0,0 +1,120 @@
+package cn.mapway.biz.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 业务上下文中的类型化键
+ * 每个键注册的时候分配一个连续的下标, BizContext 使用这个下标直接访问数组中的值
+ * <pre>
+ * public static final ContextKey&lt;User&gt; USER = ContextKey.of("user", User.class);
+ *
+ * context.put(USER, user);
+ * User user = context.get(USER);
+ * </pre>
+ * 同名的键只注册一次, 通过 Map 接口使用同样的名称访问的是同一个值
+ *
+ * @param <T> 值的类型
+ * @author zhangjianshe
+ */
+public final class ContextKey<T> {
+
+    private static final ConcurrentHashMap<String, ContextKey<?>> KEYS = new ConcurrentHashMap<>();
+    private static volatile ContextKey<?>[] byIndex = new ContextKey<?>[0];
+
+    private final String name;
+    private final Class<T> type;
+    private final int index;
+
+    private ContextKey(String name, Class<T> type, int index) {
+        this.name = name;
+        this.type = type;
+        this.index = index;
+    }
+
+    /**
+     * 注册或者获取一个键
+     *
+     * @param name 键的名称
+     * @param type 值的类型
+     * @param <T>  值的类型
+     * @return key
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> ContextKey<T> of(String name, Class<T> type) {
+        if (name == null || type == null) {
+            throw new IllegalArgumentException("ContextKey 的名称和类型不能为空");
+        }
+        ContextKey<?> key = KEYS.get(name);
+        if (key == null) {
+            key = register(name, type);
+        }
+        if (key.type != type) {
+            throw new IllegalArgumentException("ContextKey " + name + " 已经注册为类型 " + key.type.getName());
+        }
+        return (ContextKey<T>) key;
+    }
+
+    private static synchronized ContextKey<?> register(String name, Class<?> type) {
+        ContextKey<?> key = KEYS.get(name);
+        if (key == null) {
+            ContextKey<?>[] keys = Arrays.copyOf(byIndex, byIndex.length + 1);
+            key = new ContextKey<>(name, type, keys.length - 1);
+            keys[key.index] = key;
+            byIndex = keys;
+            KEYS.put(name, key);
+        }
+        return key;
+    }
+
+    /**
+     * 根据名称查找已经注册的键
+     *
+     * @param name 键的名称
+     * @return 没有注册时返回 null
+     */
+    static ContextKey<?> lookup(Object name) {
+        return name instanceof String ? KEYS.get(name) : null;
+    }
+
+    /**
+     * @return 已经注册的键的数量
+     */
+    static int count() {
+        return byIndex.length;
+    }
+
+    /**
+     * @param index 键的下标
+     * @return 键的名称
+     */
+    static String nameOf(int index) {
+        return byIndex[index].name;
+    }
+
+    /**
+     * @return 键的名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return 值的类型
+     */
+    public Class<T> getType() {
+        return type;
+    }
+
+    /**
+     * @return 键的下标
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
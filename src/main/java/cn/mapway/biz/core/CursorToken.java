@@ -0,0 +1,76 @@
+package cn.mapway.biz.core;
+
+import cn.mapway.biz.api.SystemCodeEnum;
+import cn.mapway.biz.exception.BizException;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+/**
+ * 游标分页的游标
+ * 把上一页最后一条记录的排序键编码为不透明的字符串返回给客户端, 客户端请求下一页时原样传回
+ * 支持整数 小数 字符串 和 日期类型的排序键
+ *
+ * @author zhangjianshe
+ */
+public final class CursorToken {
+
+    private CursorToken() {
+    }
+
+    /**
+     * 编码排序键
+     *
+     * @param key 排序键
+     * @return 游标, key 为 null 时返回 null
+     */
+    public static String encode(Object key) {
+        if (key == null) {
+            return null;
+        }
+        String text;
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            text = "L" + ((Number) key).longValue();
+        } else if (key instanceof Number) {
+            text = "N" + new BigDecimal(key.toString()).toPlainString();
+        } else if (key instanceof Date) {
+            text = "T" + ((Date) key).getTime();
+        } else {
+            text = "S" + key;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param token 游标
+     * @return 排序键, token 为空时返回 null
+     * @throws BizException 游标格式错误时抛出, 代码为 {@link SystemCodeEnum#INVALID_CURSOR}
+     */
+    public static Object decode(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String value = text.substring(1);
+            switch (text.charAt(0)) {
+                case 'L':
+                    return Long.parseLong(value);
+                case 'N':
+                    return new BigDecimal(value);
+                case 'T':
+                    return new Date(Long.parseLong(value));
+                case 'S':
+                    return value;
+                default:
+                    throw BizException.get(SystemCodeEnum.INVALID_CURSOR);
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw BizException.get(SystemCodeEnum.INVALID_CURSOR);
+        }
+    }
+}
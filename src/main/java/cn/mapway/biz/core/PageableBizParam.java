@@ -9,6 +9,11 @@ import lombok.Data;
  */
 @Data
 public class PageableBizParam extends BizParam {
+    /**
+     * count 取这个值时不查询总条数, 只判断是否有下一页
+     */
+    public static final int COUNT_SKIP = -2;
+
     /**
      * 查询起始页
      */
@@ -21,6 +26,12 @@ public class PageableBizParam extends BizParam {
 
     /**
      * 总的查询
+     * 大于等于 0 时为客户端已知的总条数, 不再查询; 为 -1 时查询总条数; 为 COUNT_SKIP 时不查询总条数
      */
     public Integer count = -1;
+
+    /**
+     * 游标分页时上一页返回的游标, 为空表示第一页
+     */
+    public String cursor;
 }
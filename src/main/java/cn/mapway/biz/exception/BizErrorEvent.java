@@ -0,0 +1,56 @@
+package cn.mapway.biz.exception;
+
+import lombok.Getter;
+
+/**
+ * 去重以后的异常事件
+ *
+ * @author zhangjianshe
+ */
+@Getter
+public class BizErrorEvent {
+    /**
+     * 执行器的类名
+     */
+    private final String executor;
+    /**
+     * 业务类型, 可能为 null
+     */
+    private final String bizType;
+    /**
+     * 这个指纹最近一次出现的异常
+     */
+    private final Throwable error;
+    /**
+     * 堆栈指纹, 异常类型 前几层调用栈 和 cause 的类型相同的异常指纹相同
+     */
+    private final String fingerprint;
+    /**
+     * 上次报告以后出现的次数
+     */
+    private final long count;
+    /**
+     * 这个指纹累计出现的次数
+     */
+    private final long total;
+    /**
+     * 是否是这个指纹第一次报告
+     */
+    private final boolean first;
+
+    BizErrorEvent(String executor, String bizType, Throwable error, String fingerprint, long count, long total, boolean first) {
+        this.executor = executor;
+        this.bizType = bizType;
+        this.error = error;
+        this.fingerprint = fingerprint;
+        this.count = count;
+        this.total = total;
+        this.first = first;
+    }
+
+    @Override
+    public String toString() {
+        return executor + (bizType == null ? "" : "[" + bizType + "]") + " " + error
+                + (first ? "" : " x" + count + " (total " + total + ")");
+    }
+}
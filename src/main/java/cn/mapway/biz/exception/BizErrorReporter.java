@@ -0,0 +1,390 @@
+package cn.mapway.biz.exception;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步的异常报告
+ * 请求线程只做按异常类型的限流检查和一次无锁入队, 堆栈指纹 去重和输出都在后台线程中进行,
+ * 异常风暴时不会让请求线程在 System.err 或者日志上排队.
+ * <ul>
+ * <li>限流: 每种异常类型每秒最多 permitsPerSecond 个进入队列, 其余只计数</li>
+ * <li>去重: 相同堆栈指纹的异常第一次立即报告, 之后每个去重窗口报告一次期间出现的次数</li>
+ * <li>队列满时丢弃并计数</li>
+ * </ul>
+ * 缺省的报告器把异常输出到 System.err, 可以通过 {@link #setDefault(BizErrorReporter)} 替换
+ *
+ * @author zhangjianshe
+ */
+public class BizErrorReporter implements AutoCloseable {
+
+    private static final int MAX_FRAMES = 8;
+    private static final int MAX_FINGERPRINTS = 1024;
+    /**
+     * size 中表示已经关闭的位
+     */
+    private static final int CLOSED = 1 << 30;
+
+    private static volatile BizErrorReporter defaultReporter;
+
+    private final BizErrorSink sink;
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final long windowNanos;
+    private final int capacity;
+
+    private final ClassValue<AtomicLong> limiters = new ClassValue<AtomicLong>() {
+        @Override
+        protected AtomicLong computeValue(Class<?> type) {
+            return new AtomicLong(Long.MIN_VALUE);
+        }
+    };
+    private final ConcurrentLinkedQueue<Item> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * 队列中的异常数量, 关闭以后加上 CLOSED
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<String, Aggregate> aggregates = new HashMap<>();
+    private final Thread worker;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder reported = new LongAdder();
+
+    /**
+     * 每种异常每秒 10 个, 去重窗口 60 秒, 队列 1024
+     *
+     * @param sink 接收者
+     */
+    public BizErrorReporter(BizErrorSink sink) {
+        this(sink, 10, 60000, 1024);
+    }
+
+    /**
+     * @param sink             接收者
+     * @param permitsPerSecond 每种异常类型每秒进入队列的数量
+     * @param windowMillis     去重窗口
+     * @param capacity         队列容量
+     */
+    public BizErrorReporter(BizErrorSink sink, int permitsPerSecond, long windowMillis, int capacity) {
+        if (permitsPerSecond <= 0 || capacity <= 0 || capacity >= CLOSED) {
+            throw new IllegalArgumentException("permitsPerSecond 和 capacity 必须大于 0, capacity 必须小于 " + CLOSED);
+        }
+        this.sink = sink;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+        this.burstNanos = TimeUnit.SECONDS.toNanos(1);
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, windowMillis));
+        this.capacity = capacity;
+        this.worker = new Thread(this::run, "biz-error-reporter");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * @return 缺省的报告器
+     */
+    public static BizErrorReporter getDefault() {
+        BizErrorReporter reporter = defaultReporter;
+        if (reporter == null) {
+            synchronized (BizErrorReporter.class) {
+                reporter = defaultReporter;
+                if (reporter == null) {
+                    reporter = new BizErrorReporter(BizErrorReporter::printToStderr);
+                    defaultReporter = reporter;
+                }
+            }
+        }
+        return reporter;
+    }
+
+    /**
+     * 替换缺省的报告器, 原来的报告器会被关闭
+     *
+     * @param reporter 报告器
+     */
+    public static void setDefault(BizErrorReporter reporter) {
+        BizErrorReporter old;
+        synchronized (BizErrorReporter.class) {
+            old = defaultReporter;
+            defaultReporter = reporter;
+        }
+        if (old != null && old != reporter) {
+            old.close();
+        }
+    }
+
+    /**
+     * 报告一个异常, 不会阻塞
+     *
+     * @param executorType 执行器的类型
+     * @param bizType      业务类型
+     * @param error        异常
+     */
+    public void report(Class<?> executorType, String bizType, Throwable error) {
+        received.increment();
+        if ((size.get() & CLOSED) != 0) {
+            dropped.increment();
+            return;
+        }
+        if (!acquire(error.getClass())) {
+            rateLimited.increment();
+            return;
+        }
+        while (true) {
+            int current = size.get();
+            // 关闭以后 current 大于 capacity
+            if (current >= capacity) {
+                dropped.increment();
+                return;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        queue.offer(new Item(executorType, bizType, error));
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * 立即报告去重窗口中累计的次数
+     */
+    public void flush() {
+        Item marker = new Item(null, null, null);
+        queue.offer(marker);
+        LockSupport.unpark(worker);
+        while (!marker.done && worker.isAlive()) {
+            LockSupport.parkNanos(100_000L);
+        }
+    }
+
+    /**
+     * 报告剩余的异常, 停止后台线程
+     */
+    @Override
+    public void close() {
+        while (true) {
+            int current = size.get();
+            if ((current & CLOSED) != 0) {
+                return;
+            }
+            if (size.compareAndSet(current, current | CLOSED)) {
+                break;
+            }
+        }
+        LockSupport.unpark(worker);
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * GCRA 令牌桶, 每种异常类型一个理论到达时间
+     */
+    private boolean acquire(Class<?> type) {
+        AtomicLong tat = limiters.get(type);
+        long now = System.nanoTime();
+        while (true) {
+            long current = tat.get();
+            long base = current == Long.MIN_VALUE ? now : Math.max(current, now);
+            if (base - now > burstNanos) {
+                return false;
+            }
+            if (tat.compareAndSet(current, base + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    private void run() {
+        long nextSummary = System.nanoTime() + windowNanos;
+        while (true) {
+            Item item;
+            while ((item = queue.poll()) != null) {
+                if (item.error == null) {
+                    summarize(true);
+                    item.done = true;
+                    continue;
+                }
+                size.decrementAndGet();
+                handle(item);
+            }
+            long now = System.nanoTime();
+            if (now - nextSummary >= 0) {
+                summarize(false);
+                nextSummary = now + windowNanos;
+            }
+            if ((size.get() & CLOSED) != 0) {
+                // 关闭之前计数的异常可能还没有入队, 等待计数归零
+                while ((size.get() & ~CLOSED) > 0 || !queue.isEmpty()) {
+                    item = queue.poll();
+                    if (item == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    if (item.error != null) {
+                        size.decrementAndGet();
+                        handle(item);
+                    }
+                    item.done = true;
+                }
+                summarize(true);
+                return;
+            }
+            LockSupport.parkNanos(this, Math.max(1, nextSummary - now));
+        }
+    }
+
+    private void handle(Item item) {
+        String fingerprint = fingerprint(item.error);
+        Aggregate aggregate = aggregates.get(fingerprint);
+        if (aggregate == null) {
+            if (aggregates.size() >= MAX_FINGERPRINTS) {
+                summarize(true);
+                aggregates.clear();
+            }
+            aggregate = new Aggregate();
+            aggregates.put(fingerprint, aggregate);
+            aggregate.total = 1;
+            deliver(new BizErrorEvent(item.executorType.getName(), item.bizType, item.error, fingerprint, 1, 1, true));
+            return;
+        }
+        deduplicated.increment();
+        aggregate.pending++;
+        aggregate.total++;
+        aggregate.last = item;
+    }
+
+    /**
+     * 报告累计的次数
+     *
+     * @param all 为 false 时移除整个窗口中没有再出现的指纹
+     */
+    private void summarize(boolean all) {
+        Iterator<Map.Entry<String, Aggregate>> iterator = aggregates.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Aggregate> entry = iterator.next();
+            Aggregate aggregate = entry.getValue();
+            if (aggregate.pending > 0) {
+                Item last = aggregate.last;
+                deliver(new BizErrorEvent(last.executorType.getName(), last.bizType, last.error, entry.getKey(),
+                        aggregate.pending, aggregate.total, false));
+                aggregate.pending = 0;
+                aggregate.last = null;
+            } else if (!all) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void deliver(BizErrorEvent event) {
+        reported.increment();
+        try {
+            sink.report(event);
+        } catch (Throwable ignored) {
+            // 接收者失败不能中断后台线程
+        }
+    }
+
+    static String fingerprint(Throwable error) {
+        StringBuilder builder = new StringBuilder(256);
+        builder.append(error.getClass().getName());
+        StackTraceElement[] frames = error.getStackTrace();
+        for (int i = 0; i < frames.length && i < MAX_FRAMES; i++) {
+            StackTraceElement frame = frames[i];
+            builder.append('|').append(frame.getClassName()).append('.').append(frame.getMethodName())
+                    .append(':').append(frame.getLineNumber());
+        }
+        List<Throwable> seen = new ArrayList<>();
+        Throwable cause = error.getCause();
+        while (cause != null && cause != error && !seen.contains(cause)) {
+            seen.add(cause);
+            builder.append("|cause:").append(cause.getClass().getName());
+            cause = cause.getCause();
+        }
+        return builder.toString();
+    }
+
+    private static void printToStderr(BizErrorEvent event) {
+        if (event.isFirst()) {
+            System.err.println("[biz-error] " + event.getExecutor()
+                    + (event.getBizType() == null ? "" : "[" + event.getBizType() + "]"));
+            event.getError().printStackTrace();
+        } else {
+            System.err.println("[biz-error] " + event);
+        }
+    }
+
+    /**
+     * @return report 调用次数
+     */
+    public long getReceivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return 被限流的次数
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * @return 队列满或者已经关闭时丢弃的次数
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 和已有指纹合并的次数
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * @return 交给接收者的事件数量
+     */
+    public long getReportedCount() {
+        return reported.sum();
+    }
+
+    /**
+     * @return 队列中等待处理的数量
+     */
+    public int getQueueDepth() {
+        return size.get() & ~CLOSED;
+    }
+
+    private static final class Item {
+        final Class<?> executorType;
+        final String bizType;
+        final Throwable error;
+        volatile boolean done;
+
+        Item(Class<?> executorType, String bizType, Throwable error) {
+            this.executorType = executorType;
+            this.bizType = bizType;
+            this.error = error;
+        }
+    }
+
+    private static final class Aggregate {
+        long pending;
+        long total;
+        Item last;
+    }
+}
@@ -0,0 +1,20 @@
+package cn.mapway.biz.exception;
+
+/**
+ * 业务执行中意外异常的接收者
+ * 在 BizErrorReporter 的后台线程中调用, 可以输出日志 发送告警等
+ *
+ * @author zhangjianshe
+ * @see BizErrorReporter
+ */
+@FunctionalInterface
+public interface BizErrorSink {
+
+    /**
+     * 报告一个异常
+     * 同一个堆栈指纹第一次出现时立即报告, 之后在每个去重窗口结束时报告期间出现的次数
+     *
+     * @param event 异常事件
+     */
+    void report(BizErrorEvent event);
+}
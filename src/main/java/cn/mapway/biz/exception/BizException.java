@@ -4,14 +4,30 @@ import cn.mapway.biz.api.SystemCodeEnum;
 import cn.mapway.biz.constant.BizCode;
 import cn.mapway.biz.constant.IBizCode;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Biz系统的异常定义
+ * 异常不记录堆栈, 没有参数的已注册业务代码使用预先构造好的异常实例
  *
  * @author zhangjianshe
  */
 public class BizException extends RuntimeException {
+    /**
+     * 预先构造的没有参数的异常
+     */
+    private static final ConcurrentHashMap<IBizCode, BizException> CACHED = new ConcurrentHashMap<>();
+
+    static {
+        register(SystemCodeEnum.class);
+    }
+
     private IBizCode response = null;
     private String[] objects;
+    /**
+     * 绑定参数以后的业务代码, 第一次使用的时候计算
+     */
+    private transient volatile IBizCode bound;
 
     /**
      *
@@ -24,6 +40,18 @@ public class BizException extends RuntimeException {
         this.objects = objs;
     }
 
+    /**
+     * 预先构造的共享异常, 同时关闭 suppression, 避免 addSuppressed 在共享实例上累积
+     *
+     * @param response 业务代码
+     * @param bound    绑定以后的业务代码
+     */
+    private BizException(IBizCode response, IBizCode bound) {
+        super("", null, false, false);
+        this.response = response;
+        this.bound = bound;
+    }
+
     /**
      * 构造异常类
      *
@@ -32,10 +60,41 @@ public class BizException extends RuntimeException {
      * @return data
      */
     public static BizException get(IBizCode resultCode, String... objs) {
+        if (resultCode != null && (objs == null || objs.length == 0)) {
+            BizException cached = CACHED.get(resultCode);
+            if (cached != null) {
+                return cached;
+            }
+        }
         BizException designException = new BizException(resultCode, objs);
         return designException;
     }
 
+    /**
+     * 注册业务代码枚举, 这些代码没有参数时抛出预先构造的异常
+     *
+     * @param codeEnum 实现了 IBizCode 的枚举
+     */
+    public static void register(Class<? extends IBizCode> codeEnum) {
+        IBizCode[] codes = codeEnum.getEnumConstants();
+        if (codes == null) {
+            throw new IllegalArgumentException(codeEnum.getName() + " 不是枚举类型");
+        }
+        register(codes);
+    }
+
+    /**
+     * 注册业务代码, 这些代码没有参数时抛出预先构造的异常
+     * 注册的业务代码必须是不可变的
+     *
+     * @param codes 业务代码
+     */
+    public static void register(IBizCode... codes) {
+        for (IBizCode code : codes) {
+            CACHED.putIfAbsent(code, new BizException(code, code.bind()));
+        }
+    }
+
     /**
      * 构造异常类
      *
@@ -49,6 +108,8 @@ public class BizException extends RuntimeException {
 
     /**
      * 构造异常类
+     * 消息通常是动态拼接的, 每次调用创建新的实例; 固定的错误请定义为 IBizCode 并注册,
+     * 通过 {@link #get(IBizCode, String...)} 使用预先构造的异常
      *
      * @param code code
      * @param message messages
@@ -56,7 +117,7 @@ public class BizException extends RuntimeException {
      */
     public static BizException get(final Integer code, final String message) {
         IBizCode bizCode = new BizCode(code, message);
-        BizException designException = new BizException(bizCode, null);
+        BizException designException = new BizException(bizCode, (String[]) null);
         return designException;
     }
 
@@ -91,8 +152,12 @@ public class BizException extends RuntimeException {
      * @return IBizCode
      */
     public IBizCode getResponse() {
-
-        return response.bind(objects);
+        IBizCode result = bound;
+        if (result == null && response != null) {
+            result = response.bind(objects);
+            bound = result;
+        }
+        return result;
     }
 
     
@@ -121,10 +186,11 @@ public class BizException extends RuntimeException {
     @Override
     public String toString() {
 
-        if (getResponse() != null) {
+        IBizCode result = getResponse();
+        if (result != null) {
             StringBuilder sb = new StringBuilder();
-            sb.append("{ 'code':").append(getResponse().getCode())
-                    .append(",'message':\"").append(getResponse().bind(objects))
+            sb.append("{ 'code':").append(result.getCode())
+                    .append(",'message':\"").append(result.getMessage())
                     .append("\"}");
             return sb.toString();
         }
@@ -0,0 +1,65 @@
+package cn.mapway.biz.metrics;
+
+import java.util.Arrays;
+
+/**
+ * 业务执行指标的全局配置
+ * AbstractBizExecutor 执行结束时把耗时和结果交给这里设置的接收者.
+ * 缺省使用一个 {@link InMemoryBizMetricsSink}, 每个执行器最多分别统计 64 个业务类型,
+ * 系统属性 biz.metrics.enabled=false 时缺省不记录
+ *
+ * @author zhangjianshe
+ */
+public final class BizMetrics {
+
+    /**
+     * 是否缺省记录指标的系统属性
+     */
+    public static final String PROPERTY_ENABLED = "biz.metrics.enabled";
+
+    private static final InMemoryBizMetricsSink DEFAULT = new InMemoryBizMetricsSink();
+
+    private static volatile BizMetricsSink sink =
+            Boolean.parseBoolean(System.getProperty(PROPERTY_ENABLED, "true")) ? DEFAULT : null;
+
+    private BizMetrics() {
+    }
+
+    /**
+     * @return 当前的接收者, 没有记录指标时返回 null
+     */
+    public static BizMetricsSink getSink() {
+        return sink;
+    }
+
+    /**
+     * 设置接收者
+     *
+     * @param sink 接收者, 为 null 时不记录指标
+     */
+    public static void setSink(BizMetricsSink sink) {
+        BizMetrics.sink = sink;
+    }
+
+    /**
+     * @return 缺省的内存统计
+     */
+    public static InMemoryBizMetricsSink getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 把指标同时交给多个接收者
+     *
+     * @param sinks 接收者
+     * @return 组合的接收者
+     */
+    public static BizMetricsSink composite(BizMetricsSink... sinks) {
+        BizMetricsSink[] targets = Arrays.copyOf(sinks, sinks.length);
+        return (executorType, bizType, latencyNanos, code, unexpected) -> {
+            for (BizMetricsSink target : targets) {
+                target.record(executorType, bizType, latencyNanos, code, unexpected);
+            }
+        };
+    }
+}
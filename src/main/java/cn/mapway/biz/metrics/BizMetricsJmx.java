@@ -0,0 +1,69 @@
+package cn.mapway.biz.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * 把 InMemoryBizMetricsSink 注册为 JMX MBean
+ * <pre>
+ * BizMetricsJmx.register(BizMetrics.getDefault());
+ * </pre>
+ *
+ * @author zhangjianshe
+ */
+public class BizMetricsJmx implements BizMetricsMXBean {
+
+    /**
+     * 缺省的 MBean 名称
+     */
+    public static final String OBJECT_NAME = "cn.mapway.biz:type=BizMetrics";
+
+    private final InMemoryBizMetricsSink sink;
+
+    public BizMetricsJmx(InMemoryBizMetricsSink sink) {
+        this.sink = sink;
+    }
+
+    /**
+     * 注册到平台 MBeanServer, 已经注册过的先注销
+     *
+     * @param sink 内存统计
+     * @return MBean 名称
+     */
+    public static ObjectName register(InMemoryBizMetricsSink sink) {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new BizMetricsJmx(sink), name);
+            return name;
+        } catch (JMException e) {
+            throw new IllegalStateException("注册 " + OBJECT_NAME + " 失败", e);
+        }
+    }
+
+    @Override
+    public List<BizMetricsSnapshot> getSnapshots() {
+        return sink.snapshot();
+    }
+
+    @Override
+    public String[] getSummary() {
+        List<BizMetricsSnapshot> snapshots = sink.snapshot();
+        String[] summary = new String[snapshots.size()];
+        for (int i = 0; i < summary.length; i++) {
+            summary[i] = snapshots.get(i).toString();
+        }
+        return summary;
+    }
+
+    @Override
+    public void reset() {
+        sink.reset();
+    }
+}
@@ -0,0 +1,27 @@
+package cn.mapway.biz.metrics;
+
+import java.util.List;
+
+/**
+ * 通过 JMX 查看业务执行指标
+ *
+ * @author zhangjianshe
+ * @see BizMetricsJmx
+ */
+public interface BizMetricsMXBean {
+
+    /**
+     * @return 每个执行器 每个业务类型的指标
+     */
+    List<BizMetricsSnapshot> getSnapshots();
+
+    /**
+     * @return 每个执行器 每个业务类型一行的文字描述
+     */
+    String[] getSummary();
+
+    /**
+     * 清空统计
+     */
+    void reset();
+}
@@ -0,0 +1,23 @@
+package cn.mapway.biz.metrics;
+
+/**
+ * 业务执行指标的接收者
+ * 每次执行结束时在执行线程中调用, 实现需要线程安全并且足够快, 不能抛出异常
+ *
+ * @author zhangjianshe
+ * @see BizMetrics#setSink(BizMetricsSink)
+ */
+@FunctionalInterface
+public interface BizMetricsSink {
+
+    /**
+     * 记录一次执行
+     *
+     * @param executorType 执行器的类型
+     * @param bizType      请求的业务类型, 可能为 null
+     * @param latencyNanos 执行耗时(纳秒)
+     * @param code         返回码, 成功时为 200
+     * @param unexpected   意外的异常, 正常返回或者 BizException 时为 null
+     */
+    void record(Class<?> executorType, String bizType, long latencyNanos, Integer code, Throwable unexpected);
+}
@@ -0,0 +1,69 @@
+package cn.mapway.biz.metrics;
+
+import lombok.Getter;
+
+import java.util.Map;
+
+/**
+ * 一个执行器 一个业务类型的指标快照
+ * 耗时的单位为微秒
+ *
+ * @author zhangjianshe
+ */
+@Getter
+public class BizMetricsSnapshot {
+    /**
+     * 执行器的类名
+     */
+    private final String executor;
+    /**
+     * 业务类型, 请求中没有业务类型时为空字符串
+     */
+    private final String bizType;
+    private final long calls;
+    private final long successes;
+    /**
+     * 返回错误码(包括 BizException)的次数
+     */
+    private final long bizErrors;
+    /**
+     * 意外异常的次数
+     */
+    private final long unexpectedErrors;
+    /**
+     * 错误码 -&gt; 次数
+     */
+    private final Map<Integer, Long> errorCodes;
+    private final long meanMicros;
+    private final long p50Micros;
+    private final long p90Micros;
+    private final long p99Micros;
+    private final long p999Micros;
+    private final long maxMicros;
+
+    BizMetricsSnapshot(String executor, String bizType, long calls, long successes, long bizErrors, long unexpectedErrors,
+                       Map<Integer, Long> errorCodes, long meanMicros, long[] percentiles, long maxMicros) {
+        this.executor = executor;
+        this.bizType = bizType;
+        this.calls = calls;
+        this.successes = successes;
+        this.bizErrors = bizErrors;
+        this.unexpectedErrors = unexpectedErrors;
+        this.errorCodes = errorCodes;
+        this.meanMicros = meanMicros;
+        this.p50Micros = percentiles[0];
+        this.p90Micros = percentiles[1];
+        this.p99Micros = percentiles[2];
+        this.p999Micros = percentiles[3];
+        this.maxMicros = maxMicros;
+    }
+
+    @Override
+    public String toString() {
+        return executor + (bizType.isEmpty() ? "" : "[" + bizType + "]")
+                + " calls=" + calls + " success=" + successes + " bizErrors=" + bizErrors
+                + " unexpected=" + unexpectedErrors + (errorCodes.isEmpty() ? "" : " codes=" + errorCodes)
+                + " mean=" + meanMicros + "us p50=" + p50Micros + "us p90=" + p90Micros + "us p99=" + p99Micros
+                + "us p999=" + p999Micros + "us max=" + maxMicros + "us";
+    }
+}
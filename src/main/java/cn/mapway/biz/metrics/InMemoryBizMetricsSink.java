@@ -0,0 +1,135 @@
+package cn.mapway.biz.metrics;
+
+import cn.mapway.biz.api.SystemCodeEnum;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在内存中累计指标的接收者
+ * 按执行器类型和业务类型分别统计调用次数 成功次数 错误码 意外异常和延迟分布,
+ * 通过 snapshot 读取当前的统计结果.
+ * 每个执行器最多分别统计 maxBizTypes 个业务类型, 之后出现的业务类型合并到 {@link #OTHER} 中,
+ * 避免 bizType 由请求决定时统计无限增长
+ *
+ * @author zhangjianshe
+ */
+public class InMemoryBizMetricsSink implements BizMetricsSink {
+
+    /**
+     * 超过数量上限的业务类型合并统计时使用的业务类型
+     */
+    public static final String OTHER = "other";
+
+    /**
+     * 缺省每个执行器分别统计的业务类型数量
+     */
+    public static final int DEFAULT_MAX_BIZ_TYPES = 64;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    private static final int SUCCESS = SystemCodeEnum.SUCCESS.getCode();
+
+    private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, Stats>> stats = new ConcurrentHashMap<>();
+    private final int maxBizTypes;
+
+    public InMemoryBizMetricsSink() {
+        this(DEFAULT_MAX_BIZ_TYPES);
+    }
+
+    /**
+     * @param maxBizTypes 每个执行器分别统计的业务类型数量, 不包括 {@link #OTHER}
+     */
+    public InMemoryBizMetricsSink(int maxBizTypes) {
+        if (maxBizTypes <= 0) {
+            throw new IllegalArgumentException("maxBizTypes 必须大于 0");
+        }
+        this.maxBizTypes = maxBizTypes;
+    }
+
+    @Override
+    public void record(Class<?> executorType, String bizType, long latencyNanos, Integer code, Throwable unexpected) {
+        Stats target = stats(stats.computeIfAbsent(executorType, key -> new ConcurrentHashMap<>()),
+                bizType == null ? "" : bizType);
+        target.calls.increment();
+        target.latency.recordNanos(latencyNanos);
+        if (unexpected != null) {
+            target.unexpected.increment();
+        } else if (code != null && code == SUCCESS) {
+            target.successes.increment();
+        } else {
+            target.bizErrors.increment();
+            target.codes.computeIfAbsent(code == null ? -1 : code, key -> new LongAdder()).increment();
+        }
+    }
+
+    private Stats stats(ConcurrentHashMap<String, Stats> byType, String bizType) {
+        Stats target = byType.get(bizType);
+        if (target != null) {
+            return target;
+        }
+        // 并发时可能略微超过上限, 不影响统计的正确性
+        if (byType.size() >= maxBizTypes && !OTHER.equals(bizType)) {
+            bizType = OTHER;
+        }
+        return byType.computeIfAbsent(bizType, key -> new Stats());
+    }
+
+    /**
+     * @return 所有执行器和业务类型的快照
+     */
+    public List<BizMetricsSnapshot> snapshot() {
+        List<BizMetricsSnapshot> result = new ArrayList<>();
+        for (Map.Entry<Class<?>, ConcurrentHashMap<String, Stats>> executor : stats.entrySet()) {
+            for (Map.Entry<String, Stats> bizType : executor.getValue().entrySet()) {
+                result.add(bizType.getValue().snapshot(executor.getKey().getName(), bizType.getKey()));
+            }
+        }
+        result.sort((a, b) -> a.getExecutor().equals(b.getExecutor())
+                ? a.getBizType().compareTo(b.getBizType()) : a.getExecutor().compareTo(b.getExecutor()));
+        return result;
+    }
+
+    /**
+     * 一个执行器 一个业务类型的快照
+     *
+     * @param executorType 执行器的类型
+     * @param bizType      业务类型
+     * @return 没有记录时返回 null
+     */
+    public BizMetricsSnapshot snapshot(Class<?> executorType, String bizType) {
+        Map<String, Stats> byType = stats.get(executorType);
+        Stats target = byType == null ? null : byType.get(bizType == null ? "" : bizType);
+        return target == null ? null : target.snapshot(executorType.getName(), bizType == null ? "" : bizType);
+    }
+
+    /**
+     * 清空统计
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    private static final class Stats {
+        final LongAdder calls = new LongAdder();
+        final LongAdder successes = new LongAdder();
+        final LongAdder bizErrors = new LongAdder();
+        final LongAdder unexpected = new LongAdder();
+        final ConcurrentHashMap<Integer, LongAdder> codes = new ConcurrentHashMap<>();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        BizMetricsSnapshot snapshot(String executor, String bizType) {
+            Map<Integer, Long> codeCounts = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> code : codes.entrySet()) {
+                codeCounts.put(code.getKey(), code.getValue().sum());
+            }
+            return new BizMetricsSnapshot(executor, bizType, calls.sum(), successes.sum(), bizErrors.sum(),
+                    unexpected.sum(), Collections.unmodifiableMap(codeCounts), latency.getMeanMicros(),
+                    latency.percentilesMicros(PERCENTILES), latency.getMaxMicros());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package cn.mapway.biz.metrics;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟直方图
+ * 以微秒为单位, 和 HdrHistogram 一样按 2 的幂分段, 每段再等分为 16 个桶, 相对误差不超过 1/16.
+ * 每个桶是一个 LongAdder, 记录时不加锁, 并发记录在竞争时自动分散到不同的单元.
+ * 桶在第一次记录到时才创建, 实际的耗时通常只落在少数几个桶中.
+ * 超过 2^36 微秒(约 19 小时)的值记录在最后一个桶中
+ *
+ * @author zhangjianshe
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int MAX_EXPONENT = 36;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private final AtomicReferenceArray<LongAdder> buckets = new AtomicReferenceArray<>(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 记录一次耗时
+     *
+     * @param nanos 耗时(纳秒)
+     */
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        bucket(index(Math.min(micros, MAX_VALUE))).increment();
+        count.increment();
+        sum.add(micros);
+        max.accumulate(micros);
+    }
+
+    /**
+     * @return 记录的次数
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return 平均耗时(微秒)
+     */
+    public long getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    /**
+     * @return 最大耗时(微秒)
+     */
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * 计算多个百分位, 只遍历一次桶
+     *
+     * @param percentiles 百分位, 例如 50 99 99.9, 需要从小到大排列
+     * @return 每个百分位的耗时(微秒), 取所在桶的上界
+     */
+    public long[] percentilesMicros(double... percentiles) {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            LongAdder adder = buckets.get(i);
+            counts[i] = adder == null ? 0 : adder.sum();
+            total += counts[i];
+        }
+        long[] result = new long[percentiles.length];
+        if (total == 0) {
+            return result;
+        }
+        long maxMicros = max.get();
+        int bucket = 0;
+        long seen = 0;
+        for (int p = 0; p < percentiles.length; p++) {
+            long rank = Math.max(1, (long) Math.ceil(percentiles[p] / 100.0 * total));
+            while (bucket < BUCKET_COUNT - 1 && seen + counts[bucket] < rank) {
+                seen += counts[bucket];
+                bucket++;
+            }
+            result[p] = Math.min(upperBound(bucket), maxMicros);
+        }
+        return result;
+    }
+
+    /**
+     * 清空记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            LongAdder bucket = buckets.get(i);
+            if (bucket != null) {
+                bucket.reset();
+            }
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private LongAdder bucket(int index) {
+        LongAdder bucket = buckets.get(index);
+        if (bucket == null) {
+            LongAdder created = new LongAdder();
+            bucket = buckets.compareAndSet(index, null, created) ? created : buckets.get(index);
+        }
+        return bucket;
+    }
+
+    static int index(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BITS;
+        int sub = (int) (value >>> shift) & (SUB_COUNT - 1);
+        return (shift + 1) * SUB_COUNT + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_COUNT - 1;
+        long lower = (long) (SUB_COUNT + index % SUB_COUNT) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
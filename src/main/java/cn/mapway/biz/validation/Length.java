@@ -0,0 +1,38 @@
+package cn.mapway.biz.validation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 字符串 集合 Map 或者数组的长度范围, 值为 null 时不检查
+ *
+ * @author zhangjianshe
+ * @see ParamValidator
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Length {
+    /**
+     * @return 最小长度
+     */
+    int min() default 0;
+
+    /**
+     * @return 最大长度
+     */
+    int max() default Integer.MAX_VALUE;
+
+    /**
+     * @return 错误消息, {0} 为字段名 {1} 为最小长度 {2} 为最大长度, 为空时使用缺省消息
+     */
+    String message() default "";
+
+    /**
+     * @return 错误码
+     */
+    int code() default 500;
+}
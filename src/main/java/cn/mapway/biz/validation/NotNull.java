@@ -0,0 +1,28 @@
+package cn.mapway.biz.validation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 参数字段不能为 null
+ *
+ * @author zhangjianshe
+ * @see ParamValidator
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface NotNull {
+    /**
+     * @return 错误消息, {0} 为字段名, 为空时使用缺省消息
+     */
+    String message() default "";
+
+    /**
+     * @return 错误码
+     */
+    int code() default 500;
+}
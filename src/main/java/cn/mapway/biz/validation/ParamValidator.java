@@ -0,0 +1,280 @@
+package cn.mapway.biz.validation;
+
+import cn.mapway.biz.constant.MessageTemplate;
+import cn.mapway.biz.exception.BizException;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 参数校验器
+ * 每个参数类第一次校验时扫描一次字段上的 {@link NotNull} {@link Length} {@link Range} {@link Pattern} 注解,
+ * 编译为字段读取的 MethodHandle 和检查规则, 保存在 ClassValue 中. 之后的校验不再使用反射,
+ * 校验通过时不创建任何消息, 失败时才格式化消息并抛出 BizException.
+ * 父类中声明的字段同样会被检查.
+ *
+ * @author zhangjianshe
+ */
+public final class ParamValidator {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<ParamValidator> VALIDATORS = new ClassValue<ParamValidator>() {
+        @Override
+        protected ParamValidator computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    private final Rule[] rules;
+
+    private ParamValidator(Rule[] rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * 参数类的校验器
+     *
+     * @param type 参数类
+     * @return validator
+     */
+    public static ParamValidator of(Class<?> type) {
+        return VALIDATORS.get(type);
+    }
+
+    /**
+     * 校验参数, 参数为 null 时不检查
+     *
+     * @param parameter 参数
+     * @throws BizException 第一个不满足的规则
+     */
+    public static void check(Object parameter) {
+        if (parameter != null) {
+            of(parameter.getClass()).validate(parameter);
+        }
+    }
+
+    /**
+     * 校验参数
+     *
+     * @param parameter 参数
+     * @throws BizException 第一个不满足的规则
+     */
+    public void validate(Object parameter) {
+        for (Rule rule : rules) {
+            Object value;
+            try {
+                value = rule.getter.invokeExact(parameter);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+            if (!rule.test(value)) {
+                throw BizException.get(rule.code, rule.message());
+            }
+        }
+    }
+
+    /**
+     * @return 是否有校验规则
+     */
+    public boolean hasRules() {
+        return rules.length > 0;
+    }
+
+    private static ParamValidator compile(Class<?> type) {
+        List<Rule> rules = new ArrayList<>();
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(0, current);
+        }
+        for (Class<?> current : hierarchy) {
+            for (Field field : current.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                NotNull notNull = field.getAnnotation(NotNull.class);
+                Length length = field.getAnnotation(Length.class);
+                Range range = field.getAnnotation(Range.class);
+                Pattern pattern = field.getAnnotation(Pattern.class);
+                if (notNull == null && length == null && range == null && pattern == null) {
+                    continue;
+                }
+                MethodHandle getter = getter(field);
+                String name = field.getName();
+                if (notNull != null) {
+                    rules.add(new NotNullRule(getter, name, notNull));
+                }
+                if (length != null) {
+                    rules.add(new LengthRule(getter, name, length));
+                }
+                if (range != null) {
+                    rules.add(new RangeRule(getter, name, range));
+                }
+                if (pattern != null) {
+                    rules.add(new PatternRule(getter, name, pattern));
+                }
+            }
+        }
+        return new ParamValidator(rules.toArray(new Rule[0]));
+    }
+
+    private static MethodHandle getter(Field field) {
+        try {
+            field.setAccessible(true);
+            return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalStateException("无法读取参数字段 " + field, e);
+        }
+    }
+
+    private static String format(String custom, String defaultMessage, String... values) {
+        return MessageTemplate.format(custom.isEmpty() ? defaultMessage : custom, values);
+    }
+
+    private static String number(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    /**
+     * 一个字段上的一条规则
+     */
+    private abstract static class Rule {
+        final MethodHandle getter;
+        final String name;
+        final int code;
+
+        Rule(MethodHandle getter, String name, int code) {
+            this.getter = getter;
+            this.name = name;
+            this.code = code;
+        }
+
+        abstract boolean test(Object value);
+
+        abstract String message();
+    }
+
+    private static final class NotNullRule extends Rule {
+        final NotNull annotation;
+
+        NotNullRule(MethodHandle getter, String name, NotNull annotation) {
+            super(getter, name, annotation.code());
+            this.annotation = annotation;
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value != null;
+        }
+
+        @Override
+        String message() {
+            return format(annotation.message(), "{0}不能为空", name);
+        }
+    }
+
+    private static final class LengthRule extends Rule {
+        final Length annotation;
+        final int min;
+        final int max;
+
+        LengthRule(MethodHandle getter, String name, Length annotation) {
+            super(getter, name, annotation.code());
+            this.annotation = annotation;
+            this.min = annotation.min();
+            this.max = annotation.max();
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) {
+                return true;
+            }
+            int length;
+            if (value instanceof CharSequence) {
+                length = ((CharSequence) value).length();
+            } else if (value instanceof Collection) {
+                length = ((Collection<?>) value).size();
+            } else if (value instanceof Map) {
+                length = ((Map<?, ?>) value).size();
+            } else if (value.getClass().isArray()) {
+                length = Array.getLength(value);
+            } else {
+                length = value.toString().length();
+            }
+            return length >= min && length <= max;
+        }
+
+        @Override
+        String message() {
+            return format(annotation.message(), "{0}的长度必须在{1}到{2}之间", name, Integer.toString(min), Integer.toString(max));
+        }
+    }
+
+    private static final class RangeRule extends Rule {
+        final Range annotation;
+        final double min;
+        final double max;
+
+        RangeRule(MethodHandle getter, String name, Range annotation) {
+            super(getter, name, annotation.code());
+            this.annotation = annotation;
+            this.min = annotation.min();
+            this.max = annotation.max();
+        }
+
+        @Override
+        boolean test(Object value) {
+            if (value == null) {
+                return true;
+            }
+            double number;
+            if (value instanceof Number) {
+                number = ((Number) value).doubleValue();
+            } else {
+                try {
+                    number = Double.parseDouble(value.toString());
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+            return number >= min && number <= max;
+        }
+
+        @Override
+        String message() {
+            return format(annotation.message(), "{0}必须在{1}到{2}之间", name, number(min), number(max));
+        }
+    }
+
+    private static final class PatternRule extends Rule {
+        final Pattern annotation;
+        final java.util.regex.Pattern regex;
+
+        PatternRule(MethodHandle getter, String name, Pattern annotation) {
+            super(getter, name, annotation.code());
+            this.annotation = annotation;
+            this.regex = java.util.regex.Pattern.compile(annotation.regexp());
+        }
+
+        @Override
+        boolean test(Object value) {
+            return value == null || regex.matcher(value.toString()).matches();
+        }
+
+        @Override
+        String message() {
+            return format(annotation.message(), "{0}的格式不正确", name, annotation.regexp());
+        }
+    }
+}
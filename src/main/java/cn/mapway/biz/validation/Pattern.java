@@ -0,0 +1,33 @@
+package cn.mapway.biz.validation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 字符串必须完整匹配正则表达式, 值为 null 时不检查
+ *
+ * @author zhangjianshe
+ * @see ParamValidator
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Pattern {
+    /**
+     * @return 正则表达式
+     */
+    String regexp();
+
+    /**
+     * @return 错误消息, {0} 为字段名 {1} 为正则表达式, 为空时使用缺省消息
+     */
+    String message() default "";
+
+    /**
+     * @return 错误码
+     */
+    int code() default 500;
+}
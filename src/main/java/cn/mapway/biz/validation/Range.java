@@ -0,0 +1,38 @@
+package cn.mapway.biz.validation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 数值的取值范围, 包括边界, 值为 null 时不检查
+ *
+ * @author zhangjianshe
+ * @see ParamValidator
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface Range {
+    /**
+     * @return 最小值
+     */
+    double min() default Double.NEGATIVE_INFINITY;
+
+    /**
+     * @return 最大值
+     */
+    double max() default Double.POSITIVE_INFINITY;
+
+    /**
+     * @return 错误消息, {0} 为字段名 {1} 为最小值 {2} 为最大值, 为空时使用缺省消息
+     */
+    String message() default "";
+
+    /**
+     * @return 错误码
+     */
+    int code() default 500;
+}
@@ -1,36 +1,142 @@
 package cn.mapway.dao;
 
+import cn.mapway.biz.core.BizResult;
+import cn.mapway.biz.core.CursorToken;
+import cn.mapway.biz.core.PageableBizParam;
 import lombok.Getter;
 import lombok.Setter;
 import org.nutz.dao.*;
 import org.nutz.dao.entity.Entity;
+import org.nutz.dao.entity.MappingField;
 import org.nutz.dao.pager.Pager;
 import org.nutz.dao.sql.PojoMaker;
 import org.nutz.dao.sql.Sql;
+import org.nutz.dao.util.cri.SqlExpressionGroup;
 import org.nutz.lang.Each;
+import org.nutz.trans.Trans;
 import javax.annotation.Resource;
-import java.lang.reflect.ParameterizedType;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * BaseDao
+ * 子类或者实体类声明了 {@link EntityCache} 时, fetch(id) fetch(name) fetchx(pks) 使用实体缓存,
+ * 写方法执行以后自动让相关的缓存失效. 通过 execute(Sql) 等自定义 SQL 修改数据时, 需要调用 invalidateCache().
+ * 缓存中的实体被所有调用者共享, 读取以后不能直接修改, 需要修改时先复制一份.
  *
  * @author zhangjianshe@gmail.com
  */
 public class BaseDao<T> {
 
+    /**
+     * 数量缓存最多保存的条件数量
+     */
+    private static final int MAX_COUNT_CACHE_SIZE = 1024;
+
     @Resource
     @Getter
     @Setter
     protected Dao dao;
     private Class<T> clazz;
+    private LruEntityCache<T> cache;
+    /**
+     * 批量获取时每条 IN (...) 语句包含的主键数量
+     */
+    @Getter
+    @Setter
+    private int fetchBatchSize = 500;
+    private volatile BatchLoader<Long, T> loader;
+    /**
+     * stream 查询每次从数据库读取的行数
+     */
+    @Getter
+    @Setter
+    private int streamFetchSize = 1000;
+    private volatile long countCacheTtlMillis;
+    private volatile WriteBehindBuffer<T> writeBehind;
+    private final ConcurrentHashMap<String, CountEntry> countCache = new ConcurrentHashMap<>();
 
+    /**
+     * 实体类型从子类的声明中解析, 每个 DAO 类型只解析一次
+     */
     public BaseDao()
     {
-        ParameterizedType type = (ParameterizedType) this.getClass()
-                .getGenericSuperclass();
-        this.clazz = (Class<T>) type.getActualTypeArguments()[0];
+        this.clazz = (Class<T>) EntityRegistry.entityClass(this.getClass());
+        init();
+    }
+
+    /**
+     * 直接指定实体类型, 用于没有声明泛型参数的 DAO
+     *
+     * @param clazz 实体类
+     */
+    public BaseDao(Class<T> clazz)
+    {
+        this.clazz = clazz;
+        init();
+    }
+
+    private void init() {
+        EntityCache config = this.getClass().getAnnotation(EntityCache.class);
+        if (config == null) {
+            config = clazz.getAnnotation(EntityCache.class);
+        }
+        if (config != null) {
+            enableCache(config.maxSize(), config.ttlSeconds());
+        }
+    }
+
+    /**
+     * 开启实体缓存
+     *
+     * @param maxSize    最多缓存的键数量
+     * @param ttlSeconds 缓存的有效时间, 小于等于 0 表示不过期
+     */
+    public void enableCache(int maxSize, long ttlSeconds) {
+        this.cache = new LruEntityCache<>(maxSize, ttlSeconds);
+    }
+
+    /**
+     * 实体缓存
+     *
+     * @return 没有开启缓存时返回 null
+     */
+    public LruEntityCache<T> getCache() {
+        return cache;
+    }
+
+    /**
+     * 清空实体缓存和数量缓存
+     */
+    public void invalidateCache() {
+        if (cache != null) {
+            cache.clear();
+        }
+        countCache.clear();
+    }
+
+    /**
+     * 开启数量缓存, queryPage 查询总条数时在有效期内复用相同条件的结果
+     * 缓存的数量是近似值, 插入数据以后在有效期内不会更新
+     *
+     * @param ttlSeconds 缓存的有效时间, 小于等于 0 表示关闭
+     */
+    public void enableCountCache(long ttlSeconds) {
+        this.countCacheTtlMillis = ttlSeconds <= 0 ? 0 : TimeUnit.SECONDS.toMillis(ttlSeconds);
+        countCache.clear();
     }
 
 
@@ -212,6 +318,150 @@ public class BaseDao<T> {
         return dao.fastInsert(obj);
     }
 
+    /**
+     * 批量插入
+     * 按 batchSize 分批, 每批使用一次 JDBC 批处理插入, 每批一个事务.
+     * 和 fastInsert 一样, '@Prev' 以及 '@Next' 不起作用, 自增主键不会取回
+     *
+     * @param rows      要插入的对象
+     * @param batchSize 每批的行数
+     * @return 每批的行数和耗时
+     */
+    public BulkWriteReport bulkInsert(Iterable<T> rows, int batchSize) {
+        return bulkInsert(rows, BulkWriteOptions.of(batchSize));
+    }
+
+    /**
+     * 批量插入
+     *
+     * @param rows    要插入的对象
+     * @param options 批次大小 事务提交间隔 后台写入等参数
+     * @return 每批的行数和耗时
+     * @throws IllegalStateException 已经开启事务时使用后台写入
+     */
+    public BulkWriteReport bulkInsert(Iterable<T> rows, BulkWriteOptions options) {
+        BulkWriteReport report = new BulkWriter<T>(options, chunk -> {
+            dao.fastInsert(chunk);
+            return chunk.size();
+        }).run(rows);
+        countCache.clear();
+        return report;
+    }
+
+    /**
+     * 批量更新
+     * 按主键更新全部字段, 每批使用一次 JDBC 批处理, 每批一个事务
+     *
+     * @param rows      要更新的对象
+     * @param batchSize 每批的行数
+     * @return 每批的行数和耗时
+     */
+    public BulkWriteReport bulkUpdate(Iterable<T> rows, int batchSize) {
+        return bulkUpdate(rows, BulkWriteOptions.of(batchSize));
+    }
+
+    /**
+     * 批量更新
+     *
+     * @param rows    要更新的对象
+     * @param options 批次大小 事务提交间隔 后台写入等参数
+     * @return 每批的行数和耗时
+     * @throws IllegalStateException 已经开启事务时使用后台写入
+     */
+    public BulkWriteReport bulkUpdate(Iterable<T> rows, BulkWriteOptions options) {
+        return new BulkWriter<T>(options, chunk -> {
+            int count = dao.update(chunk);
+            for (T obj : chunk) {
+                evict(obj);
+            }
+            return count;
+        }).run(rows);
+    }
+
+    /**
+     * 批量插入或更新
+     * 每批先用一条 IN 查询找出已经存在的主键, 存在的批量更新, 其余的批量插入.
+     * 主键依次取 '@Id' '@Name' '@PK', 自增主键为 0 的对象直接插入
+     *
+     * @param rows      要写入的对象
+     * @param batchSize 每批的行数
+     * @return 每批的行数和耗时
+     */
+    public BulkWriteReport bulkUpsert(Iterable<T> rows, int batchSize) {
+        return bulkUpsert(rows, BulkWriteOptions.of(batchSize));
+    }
+
+    /**
+     * 批量插入或更新
+     *
+     * @param rows    要写入的对象
+     * @param options 批次大小 事务提交间隔 后台写入等参数
+     * @return 每批的行数和耗时
+     * @throws IllegalStateException 已经开启事务时使用后台写入
+     */
+    public BulkWriteReport bulkUpsert(Iterable<T> rows, BulkWriteOptions options) {
+        BulkWriteReport report = new BulkWriter<T>(options, this::upsertChunk).run(rows);
+        countCache.clear();
+        return report;
+    }
+
+    /**
+     * 开启异步写入, 之后可以用 insertAsync 插入数据
+     * 适合日志 事件等只追加的数据, 数据在后台批量插入, 插入失败不会通知调用者
+     *
+     * @param capacity       缓冲区容量
+     * @param batchSize      每次批量插入的最大数量
+     * @param maxDelayMillis 数据在缓冲区中的最长等待时间
+     * @param policy         缓冲区满时的处理方式
+     * @return 缓冲区, 可以读取队列深度和写入耗时
+     */
+    public synchronized WriteBehindBuffer<T> enableWriteBehind(int capacity, int batchSize, long maxDelayMillis,
+                                                               WriteBehindPolicy policy) {
+        if (writeBehind != null) {
+            writeBehind.close();
+        }
+        writeBehind = new WriteBehindBuffer<>("biz-write-behind-" + clazz.getSimpleName(), capacity, batchSize,
+                maxDelayMillis, policy, batch -> {
+            dao.fastInsert(batch);
+            countCache.clear();
+        }, this::fastInsert);
+        return writeBehind;
+    }
+
+    /**
+     * 异步插入
+     * 需要先调用 enableWriteBehind
+     *
+     * @param obj 要插入的对象
+     * @return 放入缓冲区或者已经同步插入时返回 true, 缓冲区满被丢弃时返回 false
+     */
+    public boolean insertAsync(T obj) {
+        WriteBehindBuffer<T> buffer = writeBehind;
+        if (buffer == null) {
+            throw new IllegalStateException(clazz.getName() + " 没有开启异步写入");
+        }
+        return buffer.offer(obj);
+    }
+
+    /**
+     * 异步写入的缓冲区
+     *
+     * @return 没有开启异步写入时返回 null
+     */
+    public WriteBehindBuffer<T> getWriteBehind() {
+        return writeBehind;
+    }
+
+    /**
+     * 关闭异步写入, 写入缓冲区中剩余的数据
+     */
+    public synchronized void disableWriteBehind() {
+        if (writeBehind != null) {
+            writeBehind.close();
+            writeBehind = null;
+        }
+    }
+
     /**
      * 插入与
      * 将对象插入数据库同时，也将符合一个正则表达式的所有关联字段关联的对象统统插入相应的数据库
@@ -282,7 +532,9 @@ public class BaseDao<T> {
      * @see FieldFilter
      */
     public int update(T obj) {
-        return dao.update(obj);
+        int count = dao.update(obj);
+        evict(obj);
+        return count;
     }
 
     /**
@@ -294,7 +546,9 @@ public class BaseDao<T> {
      * @return 返回实际被更新的记录条数，一般的情况下，如果更新成功，返回 1，否则，返回 0
      */
     public int update(T obj, String actived) {
-        return dao.update(obj, actived);
+        int count = dao.update(obj, actived);
+        evict(obj);
+        return count;
     }
 
     /**
@@ -308,7 +562,9 @@ public class BaseDao<T> {
      * @return 返回实际被更新的记录条数，一般的情况下，如果更新成功，返回 1，否则，返回 0
      */
     public int update(T obj, String actived, String locked, boolean ignoreNull) {
-        return dao.update(obj, actived, locked, ignoreNull);
+        int count = dao.update(obj, actived, locked, ignoreNull);
+        evict(obj);
+        return count;
     }
 
     /**
@@ -319,7 +575,9 @@ public class BaseDao<T> {
      * @return int
      */
     public int update(T obj, FieldFilter fieldFilter) {
-        return dao.update(obj, fieldFilter);
+        int count = dao.update(obj, fieldFilter);
+        evict(obj);
+        return count;
     }
 
     /**
@@ -331,7 +589,9 @@ public class BaseDao<T> {
      * @return int
      */
     public int update(T obj, FieldFilter fieldFilter, Condition cnd) {
-        return dao.update(obj, fieldFilter, cnd);
+        int count = dao.update(obj, fieldFilter, cnd);
+        invalidateCache();
+        return count;
     }
 
     /**
@@ -342,7 +602,9 @@ public class BaseDao<T> {
      * @return int
      */
     public int update(T obj, Condition cnd) {
-        return dao.update(obj, cnd);
+        int count = dao.update(obj, cnd);
+        invalidateCache();
+        return count;
     }
 
     /**
@@ -364,7 +626,9 @@ public class BaseDao<T> {
      * @return 返回实际被更新的记录条数，一般的情况下，如果是单一Pojo,更新成功，返回 1，否则，返回 0
      */
     public int updateIgnoreNull(T obj) {
-        return dao.updateIgnoreNull(obj);
+        int count = dao.updateIgnoreNull(obj);
+        evict(obj);
+        return count;
     }
 
 
@@ -379,7 +643,9 @@ public class BaseDao<T> {
      * @see org.nutz.dao.entity.annotation.Table
      */
     public int update(Chain chain, Condition cnd) {
-        return dao.update(clazz, chain, cnd);
+        int count = dao.update(clazz, chain, cnd);
+        invalidateCache();
+        return count;
     }
 
     /**
@@ -396,7 +662,9 @@ public class BaseDao<T> {
      * @see org.nutz.dao.entity.annotation.ManyMany
      */
     public T updateWith(T obj, String regex) {
-        return dao.updateWith(obj, regex);
+        T result = dao.updateWith(obj, regex);
+        evict(obj);
+        return result;
     }
 
     /**
@@ -482,6 +750,155 @@ public class BaseDao<T> {
         return dao.query(clazz, cnd);
     }
 
+    /**
+     * 按分页参数分页查询, 结果中填写分页信息
+     * <ul>
+     * <li>param.count 大于等于 0 时作为总条数, 不再查询数量</li>
+     * <li>param.count 为 {@link PageableBizParam#COUNT_SKIP} 时不查询数量, 多查询一条记录判断是否有下一页,
+     * 有下一页时总条数为 current * pageSize + 1, 否则为实际的总条数</li>
+     * <li>其他情况查询数量, 开启了 enableCountCache 时使用缓存的数量</li>
+     * </ul>
+     *
+     * @param cnd   查询条件
+     * @param param 分页参数
+     * @return 查询结果
+     */
+    public BizResult<List<T>> queryPage(Condition cnd, PageableBizParam param) {
+        int current = param.getCurrent() == null || param.getCurrent() < 1 ? 1 : param.getCurrent();
+        int pageSize = param.getPageSize() == null || param.getPageSize() <= 0 ? 10 : param.getPageSize();
+        Integer count = param.getCount();
+        List<T> list;
+        long total;
+        if (count != null && count == PageableBizParam.COUNT_SKIP) {
+            list = dao.query(clazz, cnd, new LimitPager(current, pageSize, pageSize + 1));
+            long offset = (long) pageSize * (current - 1);
+            if (list.size() > pageSize) {
+                list = new ArrayList<>(list.subList(0, pageSize));
+                total = offset + pageSize + 1;
+            } else {
+                total = offset + list.size();
+            }
+        } else {
+            total = count != null && count >= 0 ? count : countCached(cnd);
+            list = dao.query(clazz, cnd, dao.createPager(current, pageSize));
+        }
+        BizResult<List<T>> result = BizResult.success(list);
+        result.setListInfo(total, (long) current, (long) pageSize);
+        return result;
+    }
+
+    /**
+     * 查询数量, 开启了数量缓存时在有效期内复用相同条件的结果
+     *
+     * @param cnd WHERE 条件
+     * @return 数量
+     */
+    public int countCached(Condition cnd) {
+        long ttl = countCacheTtlMillis;
+        if (ttl <= 0) {
+            return dao.count(clazz, cnd);
+        }
+        String key = cnd == null ? "" : cnd.toSql(getEntity());
+        long now = System.currentTimeMillis();
+        CountEntry entry = countCache.get(key);
+        if (entry != null && entry.expireAt > now) {
+            return entry.count;
+        }
+        int value = dao.count(clazz, cnd);
+        if (countCache.size() >= MAX_COUNT_CACHE_SIZE) {
+            countCache.clear();
+        }
+        countCache.put(key, new CountEntry(value, now + ttl));
+        return value;
+    }
+
+    /**
+     * 游标分页查询 (keyset pagination)
+     * 按 orderKey 升序查询 orderKey &gt; lastKey 的 limit 条记录, 不使用 OFFSET, 翻页的代价和页码无关.
+     * orderKey 的取值必须唯一 (通常为主键), 并且有索引
+     *
+     * @param cnd      查询条件, 只能是 Cnd 或者 null, 其中的排序会被忽略
+     * @param orderKey 排序字段的 Java 字段名
+     * @param lastKey  上一页最后一条记录的 orderKey 值, 为 null 表示第一页
+     * @param limit    每页记录数
+     * @return 对象列表
+     */
+    public List<T> querySeek(Condition cnd, String orderKey, Object lastKey, int limit) {
+        return querySeek(cnd, orderKey, lastKey, limit, false);
+    }
+
+    /**
+     * 游标分页查询 (keyset pagination)
+     *
+     * @param cnd      查询条件, 只能是 Cnd 或者 null, 其中的排序会被忽略
+     * @param orderKey 排序字段的 Java 字段名
+     * @param lastKey  上一页最后一条记录的 orderKey 值, 为 null 表示第一页
+     * @param limit    每页记录数
+     * @param desc     是否降序
+     * @return 对象列表
+     */
+    public List<T> querySeek(Condition cnd, String orderKey, Object lastKey, int limit, boolean desc) {
+        if (cnd != null && !(cnd instanceof Cnd)) {
+            throw new IllegalArgumentException("querySeek 只支持 Cnd 条件");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit 必须大于 0");
+        }
+        Cnd seek = lastKey == null ? Cnd.NEW() : Cnd.where(orderKey, desc ? "<" : ">", lastKey);
+        if (cnd != null) {
+            SqlExpressionGroup where = ((Cnd) cnd).where();
+            if (!where.isEmpty()) {
+                seek.and(where);
+            }
+        }
+        if (desc) {
+            seek.desc(orderKey);
+        } else {
+            seek.asc(orderKey);
+        }
+        return dao.query(clazz, seek, dao.createPager(1, limit));
+    }
+
+    /**
+     * 按分页参数进行游标分页查询
+     * 参数中的 cursor 为上一页返回的游标, 多查询一条记录判断是否还有下一页,
+     * 有下一页时结果中的 cursor 为下一页的游标, 否则为 null
+     *
+     * @param cnd      查询条件, 只能是 Cnd 或者 null
+     * @param orderKey 排序字段的 Java 字段名, 取值必须唯一
+     * @param param    分页参数, 使用其中的 cursor 和 pageSize
+     * @return 查询结果
+     */
+    public BizResult<List<T>> querySeek(Condition cnd, String orderKey, PageableBizParam param) {
+        int pageSize = param.getPageSize() == null || param.getPageSize() <= 0 ? 10 : param.getPageSize();
+        List<T> list = querySeek(cnd, orderKey, CursorToken.decode(param.getCursor()), pageSize + 1, false);
+        String next = null;
+        if (list.size() > pageSize) {
+            list = new ArrayList<>(list.subList(0, pageSize));
+            next = CursorToken.encode(seekKey(list.get(pageSize - 1), orderKey));
+        }
+        BizResult<List<T>> result = BizResult.success(list);
+        result.setListInfo(param.getCount() == null || param.getCount() < 0 ? null : param.getCount().longValue(),
+                param.getCurrent() == null ? null : param.getCurrent().longValue(), (long) pageSize);
+        result.setCursor(next);
+        return result;
+    }
+
+    /**
+     * 记录的排序键, 作为下一次 querySeek 的 lastKey
+     *
+     * @param obj      记录
+     * @param orderKey 排序字段的 Java 字段名
+     * @return 排序键
+     */
+    public Object seekKey(T obj, String orderKey) {
+        MappingField field = getEntity().getField(orderKey);
+        if (field == null) {
+            throw new IllegalArgumentException(clazz.getName() + " 没有字段 " + orderKey);
+        }
+        return field.getValue(obj);
+    }
+
 
     /**
      * 每一个
@@ -509,6 +926,38 @@ public class BaseDao<T> {
     }
 
 
+    /**
+     * 流式查询
+     * 使用只进的数据库游标逐行读取, 不会把结果集读到内存中, 适合导出等大数据量的处理.
+     * 第一次读取数据时才执行查询, 之后 Stream 占用一个数据库连接直到关闭, 读到最后一行时也会自动释放.
+     * 没有读取过的 Stream 不占用连接. 在 Nutz 事务中第一次读取时使用事务的连接.
+     * 需要 NutDao 等 DaoSupport 的实现, 其他的 Dao 实现抛出 IllegalStateException
+     * <pre>
+     * try (Stream&lt;User&gt; users = userDao.stream(Cnd.where("status", "=", 1))) {
+     *     users.forEach(writer::row);
+     * }
+     * </pre>
+     *
+     * @param cnd WHERE 条件。如果为 null，将获取全部数据
+     * @return 对象流
+     */
+    public Stream<T> stream(Condition cnd) {
+        return stream(cnd, streamFetchSize);
+    }
+
+    /**
+     * 流式查询
+     *
+     * @param cnd       WHERE 条件。如果为 null，将获取全部数据
+     * @param fetchSize 每次从数据库读取的行数, MySQL 需要 Integer.MIN_VALUE 或者在连接参数中开启 useCursorFetch
+     * @return 对象流
+     */
+    public Stream<T> stream(Condition cnd, int fetchSize) {
+        EntityCursor<T> cursor = new EntityCursor<>(dao, getEntity(), cnd, fetchSize);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
     /**
      * 删除
      * 根据对象 ID 删除一个对象。它只会删除这个对象，关联对象不会被删除。
@@ -522,7 +971,11 @@ public class BaseDao<T> {
      * @see org.nutz.dao.entity.annotation.Id
      */
     public int delete(long id) {
-        return dao.delete(clazz, id);
+        int count = dao.delete(clazz, id);
+        if (cache != null) {
+            cache.invalidate(Long.valueOf(id));
+        }
+        return count;
     }
 
     /**
@@ -538,7 +991,11 @@ public class BaseDao<T> {
      * @see org.nutz.dao.entity.annotation.Name
      */
     public int delete(String name) {
-        return dao.delete(clazz, name);
+        int count = dao.delete(clazz, name);
+        if (cache != null) {
+            cache.invalidate(name);
+        }
+        return count;
     }
 
     /**
@@ -549,7 +1006,11 @@ public class BaseDao<T> {
      * @return int
      */
     public int deletex(Object... pks) {
-        return dao.deletex(clazz, pks);
+        int count = dao.deletex(clazz, pks);
+        if (cache != null) {
+            cache.invalidate(pkKey(pks));
+        }
+        return count;
     }
 
 
@@ -564,7 +1025,17 @@ public class BaseDao<T> {
      * @see org.nutz.dao.entity.annotation.Id
      */
     public T fetch(long id) {
-        return dao.fetch(clazz, id);
+        if (cache == null) {
+            return dao.fetch(clazz, id);
+        }
+        Long key = id;
+        T obj = cache.get(key);
+        if (obj == null) {
+            long stamp = cache.stamp();
+            obj = dao.fetch(clazz, id);
+            cacheObject(key, obj, stamp);
+        }
+        return obj;
     }
 
     /**
@@ -578,7 +1049,16 @@ public class BaseDao<T> {
      * @see org.nutz.dao.entity.annotation.Name
      */
     public T fetch(String name) {
-        return dao.fetch(clazz, name);
+        if (cache == null || name == null) {
+            return dao.fetch(clazz, name);
+        }
+        T obj = cache.get(name);
+        if (obj == null) {
+            long stamp = cache.stamp();
+            obj = dao.fetch(clazz, name);
+            cacheObject(name, obj, stamp);
+        }
+        return obj;
     }
 
     /**
@@ -589,7 +1069,17 @@ public class BaseDao<T> {
      * @return {@link T}
      */
     public T fetchx(Object... pks) {
-        return dao.fetchx(clazz, pks);
+        if (cache == null || pks == null) {
+            return dao.fetchx(clazz, pks);
+        }
+        Object key = pkKey(pks);
+        T obj = cache.get(key);
+        if (obj == null) {
+            long stamp = cache.stamp();
+            obj = dao.fetchx(clazz, pks);
+            cacheObject(key, obj, stamp);
+        }
+        return obj;
     }
 
     /**
@@ -605,6 +1095,154 @@ public class BaseDao<T> {
         return dao.fetch(clazz, cnd);
     }
 
+    /**
+     * 批量获取
+     * 根据一组 ID 获取对象, 按照 fetchBatchSize 拆分为多条 IN (...) 查询
+     *
+     * @param ids 对象 ID 列表
+     * @return 按照传入的顺序排列的对象, 不存在的 ID 被忽略
+     * @see org.nutz.dao.entity.annotation.Id
+     */
+    public List<T> fetchAll(Collection<Long> ids) {
+        return orderedList(ids, fetchAllMap(ids));
+    }
+
+    /**
+     * 批量获取
+     *
+     * @param ids 对象 ID 列表
+     * @return ID 到对象的映射, 按照传入的顺序排列, 不存在的 ID 没有对应的条目
+     * @see org.nutz.dao.entity.annotation.Id
+     */
+    public Map<Long, T> fetchAllMap(Collection<Long> ids) {
+        MappingField idField = requireField(getEntity().getIdField(), "@Id");
+        return fetchBatch(ids, key -> key,
+                obj -> ((Number) idField.getValue(obj)).longValue(),
+                chunk -> Cnd.where(idField.getName(), "in", chunk));
+    }
+
+    /**
+     * 异步获取
+     * 并发的 fetchAsync 调用在很短的时间窗口内合并为一次 fetchAllMap 批量查询,
+     * 同一个 ID 正在加载时共享同一个结果. 适用于多个业务节点并发执行时各自获取同一个实体的数据.
+     * <p>
+     * 批量查询在加载器的线程中执行, 不在调用者的 Nutz 事务中, 看不到事务中还没有提交的修改.
+     * 当前线程已经开启事务时不使用加载器, 在当前线程中用 fetch(id) 同步查询, 返回已经完成的 future
+     *
+     * @param id 对象 ID
+     * @return 获取完成的 future, 对象不存在时结果为 null
+     * @see #enableLoader(long, int)
+     */
+    public CompletableFuture<T> fetchAsync(long id) {
+        if (Trans.get() != null) {
+            try {
+                return CompletableFuture.completedFuture(fetch(id));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        BatchLoader<Long, T> current = loader;
+        if (current == null) {
+            synchronized (this) {
+                current = loader;
+                if (current == null) {
+                    current = new BatchLoader<>(this::fetchAllMap, 2, fetchBatchSize);
+                    loader = current;
+                }
+            }
+        }
+        return current.load(id);
+    }
+
+    /**
+     * 设置 fetchAsync 合并请求的参数, 缺省的时间窗口为 2 毫秒, 批量大小为 fetchBatchSize
+     * 加载器在自己的线程池中查询, 不参与调用者的事务, 事务中的 fetchAsync 不经过加载器
+     *
+     * @param windowMillis 收集请求的时间窗口
+     * @param maxBatchSize 一次批量查询的最大 ID 数量
+     */
+    public void enableLoader(long windowMillis, int maxBatchSize) {
+        loader = new BatchLoader<>(this::fetchAllMap, windowMillis, maxBatchSize);
+    }
+
+    /**
+     * @return fetchAsync 使用的加载器, 还没有使用过时返回 null
+     */
+    public BatchLoader<Long, T> getLoader() {
+        return loader;
+    }
+
+    /**
+     * 批量获取
+     * 根据一组 Name 获取对象, 按照 fetchBatchSize 拆分为多条 IN (...) 查询
+     *
+     * @param names 对象 Name 列表
+     * @return 按照传入的顺序排列的对象, 不存在的 Name 被忽略
+     * @see org.nutz.dao.entity.annotation.Name
+     */
+    public List<T> fetchAllByName(Collection<String> names) {
+        return orderedList(names, fetchAllByNameMap(names));
+    }
+
+    /**
+     * 批量获取
+     *
+     * @param names 对象 Name 列表
+     * @return Name 到对象的映射, 按照传入的顺序排列, 不存在的 Name 没有对应的条目
+     * @see org.nutz.dao.entity.annotation.Name
+     */
+    public Map<String, T> fetchAllByNameMap(Collection<String> names) {
+        MappingField nameField = requireField(getEntity().getNameField(), "@Name");
+        if (nameField.isCasesensitive()) {
+            return fetchBatch(names, key -> key,
+                    obj -> String.valueOf(nameField.getValue(obj)),
+                    chunk -> Cnd.where(nameField.getName(), "in", chunk));
+        }
+        return fetchBatch(names, String::toLowerCase,
+                obj -> String.valueOf(nameField.getValue(obj)).toLowerCase(),
+                chunk -> Cnd.where(nameField.getName(), "in", chunk));
+    }
+
+    /**
+     * 批量获取
+     * 根据一组复合主键获取对象, 每个复合主键的参数顺序必须同 '@PK' 中声明的顺序一致
+     *
+     * @param pksList 复合主键列表
+     * @return 按照传入的顺序排列的对象, 不存在的主键被忽略
+     * @see org.nutz.dao.entity.annotation.PK
+     */
+    public List<T> fetchAllx(Collection<Object[]> pksList) {
+        List<MappingField> pkFields = getEntity().getCompositePKFields();
+        if (pkFields == null || pkFields.isEmpty()) {
+            throw new IllegalStateException(clazz.getName() + " 没有声明 @PK");
+        }
+        List<Object> keys = new ArrayList<>(pksList.size());
+        for (Object[] pks : pksList) {
+            keys.add(pkKey(pks));
+        }
+        Map<Object, T> found = fetchBatch(keys, key -> key,
+                obj -> {
+                    Object[] pks = new Object[pkFields.size()];
+                    for (int i = 0; i < pks.length; i++) {
+                        pks[i] = pkFields.get(i).getValue(obj);
+                    }
+                    return pkKey(pks);
+                },
+                chunk -> {
+                    Cnd cnd = null;
+                    for (Object key : chunk) {
+                        List<?> pks = (List<?>) key;
+                        SqlExpressionGroup group = Cnd.exps(pkFields.get(0).getName(), "=", pks.get(0));
+                        for (int i = 1; i < pkFields.size(); i++) {
+                            group.and(pkFields.get(i).getName(), "=", pks.get(i));
+                        }
+                        cnd = cnd == null ? Cnd.where(group) : cnd.or(group);
+                    }
+                    return cnd;
+                });
+        return orderedList(keys, found);
+    }
+
 
     /**
      * 清晰的
@@ -614,7 +1252,9 @@ public class BaseDao<T> {
      * @return 影响的行数
      */
     public int clear(Condition cnd) {
-        return dao.clear(clazz, cnd);
+        int count = dao.clear(clazz, cnd);
+        invalidateCache();
+        return count;
     }
 
 
@@ -625,7 +1265,16 @@ public class BaseDao<T> {
      * @return 实体描述
      */
     public Entity<T> getEntity() {
-        return dao.getEntity(clazz);
+        return EntityRegistry.entity(dao, clazz);
+    }
+
+    /**
+     * 实体类
+     *
+     * @return 实体类
+     */
+    public Class<T> getEntityClass() {
+        return clazz;
     }
 
     /**
@@ -707,7 +1356,9 @@ public class BaseDao<T> {
      * @return 原对象
      */
     public T insertOrUpdate(T t) {
-        return dao.insertOrUpdate(t);
+        T result = dao.insertOrUpdate(t);
+        evict(t);
+        return result;
     }
 
     /**
@@ -720,7 +1371,9 @@ public class BaseDao<T> {
      * @return 原对象
      */
     public T insertOrUpdate(T t, FieldFilter insertFieldFilter, FieldFilter updateFieldFilter) {
-        return dao.insertOrUpdate(t, insertFieldFilter, updateFieldFilter);
+        T result = dao.insertOrUpdate(t, insertFieldFilter, updateFieldFilter);
+        evict(t);
+        return result;
     }
 
     /**
@@ -737,7 +1390,283 @@ public class BaseDao<T> {
      * @return 若更新成功, 返回值大于0, 否则小于等于0
      */
     public int updateAndIncrIfMatch(T obj, FieldFilter fieldFilter, String fieldName) {
-        return dao.updateAndIncrIfMatch(obj, fieldFilter, fieldName);
+        int count = dao.updateAndIncrIfMatch(obj, fieldFilter, fieldName);
+        evict(obj);
+        return count;
+    }
+
+    /**
+     * 缓存从数据库加载的对象, 加载期间有写操作让缓存失效时不缓存
+     *
+     * @param stamp 加载之前的 {@link LruEntityCache#stamp()}
+     */
+    private void cacheObject(Object key, T obj, long stamp) {
+        if (obj != null) {
+            List<Object> keys = entityKeys(obj);
+            if (!keys.contains(key)) {
+                keys.add(key);
+            }
+            cache.put(keys, obj, stamp);
+        }
+    }
+
+    /**
+     * 写操作以后让对象相关的缓存失效
+     */
+    private void evict(T obj) {
+        if (cache == null) {
+            return;
+        }
+        if (obj == null || !clazz.isInstance(obj)) {
+            // 集合 数组 等批量更新
+            cache.clear();
+            return;
+        }
+        for (Object key : entityKeys(obj)) {
+            cache.invalidate(key);
+        }
+    }
+
+    /**
+     * 对象的 @Id @Name @PK 对应的缓存键
+     */
+    private List<Object> entityKeys(T obj) {
+        Entity<T> entity = getEntity();
+        List<Object> keys = new ArrayList<>(3);
+        MappingField idField = entity.getIdField();
+        if (idField != null) {
+            Object id = idField.getValue(obj);
+            if (id instanceof Number) {
+                keys.add(((Number) id).longValue());
+            }
+        }
+        MappingField nameField = entity.getNameField();
+        if (nameField != null) {
+            Object name = nameField.getValue(obj);
+            if (name != null) {
+                keys.add(name.toString());
+            }
+        }
+        List<MappingField> pkFields = entity.getCompositePKFields();
+        if (pkFields != null && !pkFields.isEmpty()) {
+            Object[] pks = new Object[pkFields.size()];
+            for (int i = 0; i < pks.length; i++) {
+                pks[i] = pkFields.get(i).getValue(obj);
+            }
+            keys.add(pkKey(pks));
+        }
+        return keys;
+    }
+
+    /**
+     * bulkUpsert 的一批: 查询已经存在的主键, 分成更新和插入两部分
+     */
+    private int upsertChunk(List<T> chunk) {
+        Entity<T> entity = getEntity();
+        List<MappingField> keyFields = upsertFields(entity);
+        Map<Object, T> keyed = new LinkedHashMap<>();
+        List<T> inserts = new ArrayList<>();
+        List<T> updates = new ArrayList<>();
+        for (T obj : chunk) {
+            Object key = upsertKey(keyFields, obj);
+            if (key == null) {
+                inserts.add(obj);
+            } else if (keyed.containsKey(key)) {
+                // 同一批中重复的主键, 在第一条写入以后更新
+                updates.add(obj);
+            } else {
+                keyed.put(key, obj);
+            }
+        }
+        if (!keyed.isEmpty()) {
+            Cnd cnd;
+            if (keyFields.size() == 1) {
+                List<Object> values = new ArrayList<>(keyed.size());
+                for (T obj : keyed.values()) {
+                    values.add(keyFields.get(0).getValue(obj));
+                }
+                cnd = Cnd.where(keyFields.get(0).getName(), "in", values);
+            } else {
+                cnd = null;
+                for (Object key : keyed.keySet()) {
+                    List<?> pks = (List<?>) key;
+                    SqlExpressionGroup group = Cnd.exps(keyFields.get(0).getName(), "=", pks.get(0));
+                    for (int i = 1; i < keyFields.size(); i++) {
+                        group.and(keyFields.get(i).getName(), "=", pks.get(i));
+                    }
+                    cnd = cnd == null ? Cnd.where(group) : cnd.or(group);
+                }
+            }
+            StringBuilder regex = new StringBuilder("^(");
+            for (int i = 0; i < keyFields.size(); i++) {
+                regex.append(i == 0 ? "" : "|").append(keyFields.get(i).getName());
+            }
+            regex.append(")$");
+            List<T> existing = dao.query(clazz, cnd, null, regex.toString());
+            List<T> first = new ArrayList<>();
+            for (T found : existing) {
+                T obj = keyed.remove(upsertKey(keyFields, found));
+                if (obj != null) {
+                    first.add(obj);
+                }
+            }
+            // 不存在的先插入, 同一批中重复的主键随后更新
+            inserts.addAll(keyed.values());
+            updates.addAll(0, first);
+        }
+        int count = 0;
+        if (!inserts.isEmpty()) {
+            dao.fastInsert(inserts);
+            count += inserts.size();
+        }
+        if (!updates.isEmpty()) {
+            count += dao.update(updates);
+        }
+        for (T obj : chunk) {
+            evict(obj);
+        }
+        return count;
+    }
+
+    private List<MappingField> upsertFields(Entity<T> entity) {
+        if (entity.getIdField() != null) {
+            return Arrays.asList(entity.getIdField());
+        }
+        if (entity.getNameField() != null) {
+            return Arrays.asList(entity.getNameField());
+        }
+        List<MappingField> pkFields = entity.getCompositePKFields();
+        if (pkFields == null || pkFields.isEmpty()) {
+            throw new IllegalStateException(clazz.getName() + " 没有声明 @Id @Name 或者 @PK");
+        }
+        return pkFields;
+    }
+
+    /**
+     * bulkUpsert 使用的主键, 没有主键值(包括自增主键为 0)时返回 null
+     */
+    private Object upsertKey(List<MappingField> keyFields, T obj) {
+        if (keyFields.size() == 1) {
+            MappingField field = keyFields.get(0);
+            Object value = field.getValue(obj);
+            if (value instanceof Number) {
+                long id = ((Number) value).longValue();
+                return id == 0 && field.isAutoIncreasement() ? null : Long.valueOf(id);
+            }
+            if (value instanceof String && field.isName() && !field.isCasesensitive()) {
+                return ((String) value).toLowerCase();
+            }
+            return value;
+        }
+        Object[] pks = new Object[keyFields.size()];
+        for (int i = 0; i < pks.length; i++) {
+            pks[i] = keyFields.get(i).getValue(obj);
+            if (pks[i] == null) {
+                return null;
+            }
+        }
+        return pkKey(pks);
+    }
+
+    /**
+     * 复合主键的缓存键, 整数统一转换为 Long
+     */
+    private static Object pkKey(Object[] pks) {
+        Object[] values = new Object[pks.length];
+        for (int i = 0; i < pks.length; i++) {
+            Object value = pks[i];
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                value = ((Number) value).longValue();
+            }
+            values[i] = value;
+        }
+        return Arrays.asList(values);
+    }
+
+    /**
+     * 批量获取的公共逻辑: 先读缓存, 剩余的键去重以后分批查询
+     *
+     * @param keys     传入的键
+     * @param matchKey 传入的键转换为用于匹配结果的键
+     * @param keyOf    从查询结果中取出匹配的键
+     * @param cndOf    一批键的查询条件
+     * @return 传入的键到对象的映射
+     */
+    private <K, M> Map<K, T> fetchBatch(Collection<K> keys, Function<K, M> matchKey, Function<T, M> keyOf,
+                                        Function<List<K>, Condition> cndOf) {
+        Map<K, T> result = new LinkedHashMap<>();
+        if (keys == null || keys.isEmpty()) {
+            return result;
+        }
+        Map<M, K> pending = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (key == null) {
+                continue;
+            }
+            T cached = cache == null ? null : cache.get(key);
+            if (cached != null) {
+                result.put(key, cached);
+            } else {
+                pending.putIfAbsent(matchKey.apply(key), key);
+            }
+        }
+        if (!pending.isEmpty()) {
+            long stamp = cache == null ? 0 : cache.stamp();
+            Map<M, T> loaded = new LinkedHashMap<>();
+            List<K> distinct = new ArrayList<>(pending.values());
+            int batch = Math.max(1, fetchBatchSize);
+            for (int from = 0; from < distinct.size(); from += batch) {
+                List<K> chunk = distinct.subList(from, Math.min(from + batch, distinct.size()));
+                for (T obj : dao.query(clazz, cndOf.apply(chunk))) {
+                    loaded.put(keyOf.apply(obj), obj);
+                }
+            }
+            for (K key : keys) {
+                if (key == null || result.containsKey(key)) {
+                    continue;
+                }
+                T obj = loaded.get(matchKey.apply(key));
+                if (obj != null) {
+                    result.put(key, obj);
+                    if (cache != null) {
+                        cacheObject(key, obj, stamp);
+                    }
+                }
+            }
+        }
+        return result;
     }
 
+    private <K> List<T> orderedList(Collection<K> keys, Map<K, T> found) {
+        List<T> list = new ArrayList<>(found.size());
+        if (keys != null) {
+            for (K key : keys) {
+                T obj = found.get(key);
+                if (obj != null) {
+                    list.add(obj);
+                }
+            }
+        }
+        return list;
+    }
+
+    private MappingField requireField(MappingField field, String annotation) {
+        if (field == null) {
+            throw new IllegalStateException(clazz.getName() + " 没有声明 " + annotation);
+        }
+        return field;
+    }
+
+    /**
+     * 缓存的总条数
+     */
+    private static final class CountEntry {
+        final int count;
+        final long expireAt;
+
+        CountEntry(int count, long expireAt) {
+            this.count = count;
+            this.expireAt = expireAt;
+        }
+    }
 }
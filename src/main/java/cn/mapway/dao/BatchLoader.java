@@ -0,0 +1,222 @@
+package cn.mapway.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 合并单个键的加载请求
+ * 在一个很短的时间窗口内收集各个线程的 load(key) 请求, 窗口结束或者数量达到 maxBatchSize 时
+ * 用一次批量查询加载所有的键, 然后完成每个调用者的 future.
+ * 正在加载的同一个键只查询一次, 调用者共享同一个 future.
+ * <p>
+ * 只有并发的调用才会被合并, 同一个线程中依次 load(key).join() 的调用每次都要等待一个时间窗口.
+ * <p>
+ * 批量加载缺省在加载器专用的线程池中执行. 不要使用 BizExecutors 的缺省线程池:
+ * 业务节点在那个线程池中 load(key).join() 时, 线程全部阻塞以后批量加载的任务永远排不上队.
+ *
+ * @param <K> 键的类型
+ * @param <T> 值的类型
+ * @author zhangjianshe
+ */
+public class BatchLoader<K, T> {
+
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "biz-batch-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final AtomicInteger DISPATCHERS = new AtomicInteger();
+
+    /**
+     * 批量加载使用的线程池, 只执行批量加载函数, 不会等待其他任务
+     */
+    private static final ThreadPoolExecutor DISPATCH = createDispatchExecutor();
+
+    private final Function<List<K>, Map<K, T>> batchFunction;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Executor executor;
+
+    private final ConcurrentHashMap<K, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private List<K> pending = new ArrayList<>();
+    private ScheduledFuture<?> timer;
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder loadedKeys = new LongAdder();
+
+    /**
+     * @param batchFunction 批量加载函数, 返回的映射中没有的键加载结果为 null
+     * @param windowMillis  收集请求的时间窗口
+     * @param maxBatchSize  一次批量加载的最大键数量
+     */
+    public BatchLoader(Function<List<K>, Map<K, T>> batchFunction, long windowMillis, int maxBatchSize) {
+        this(batchFunction, windowMillis, maxBatchSize, DISPATCH);
+    }
+
+    /**
+     * @param batchFunction 批量加载函数, 返回的映射中没有的键加载结果为 null
+     * @param windowMillis  收集请求的时间窗口
+     * @param maxBatchSize  一次批量加载的最大键数量
+     * @param executor      执行批量加载的线程池, 不能是调用 load(key).join() 的线程所在的线程池
+     */
+    public BatchLoader(Function<List<K>, Map<K, T>> batchFunction, long windowMillis, int maxBatchSize, Executor executor) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize 必须大于 0");
+        }
+        this.batchFunction = batchFunction;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, windowMillis));
+        this.maxBatchSize = maxBatchSize;
+        this.executor = executor;
+    }
+
+    /**
+     * 加载一个键
+     *
+     * @param key key
+     * @return 加载完成的 future, 不存在时结果为 null
+     */
+    public CompletableFuture<T> load(K key) {
+        requests.increment();
+        CompletableFuture<T> future = inFlight.get(key);
+        if (future != null) {
+            deduplicated.increment();
+            return future;
+        }
+        CompletableFuture<T> created = new CompletableFuture<>();
+        future = inFlight.putIfAbsent(key, created);
+        if (future != null) {
+            deduplicated.increment();
+            return future;
+        }
+        List<K> ready = null;
+        synchronized (lock) {
+            pending.add(key);
+            if (pending.size() >= maxBatchSize || windowNanos == 0) {
+                ready = takePending();
+            } else if (timer == null) {
+                timer = TIMER.schedule(this::flush, windowNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+        if (ready != null) {
+            submit(ready);
+        }
+        return created;
+    }
+
+    /**
+     * 立即加载已经收集的请求
+     */
+    public void flush() {
+        List<K> ready;
+        synchronized (lock) {
+            ready = takePending();
+        }
+        if (!ready.isEmpty()) {
+            submit(ready);
+        }
+    }
+
+    /**
+     * @return load 调用次数
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * @return 和正在加载的键合并的调用次数
+     */
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * @return 批量加载的次数
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * @return 批量加载的键数量
+     */
+    public long getLoadedKeyCount() {
+        return loadedKeys.sum();
+    }
+
+    private static ThreadPoolExecutor createDispatchExecutor() {
+        int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "biz-batch-dispatch-" + DISPATCHERS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private List<K> takePending() {
+        if (timer != null) {
+            timer.cancel(false);
+            timer = null;
+        }
+        List<K> ready = pending;
+        if (!ready.isEmpty()) {
+            pending = new ArrayList<>();
+        }
+        return ready;
+    }
+
+    private void submit(List<K> keys) {
+        try {
+            executor.execute(() -> dispatch(keys));
+        } catch (RuntimeException e) {
+            fail(keys, e);
+        }
+    }
+
+    private void dispatch(List<K> keys) {
+        batches.increment();
+        loadedKeys.add(keys.size());
+        Map<K, T> values;
+        try {
+            values = batchFunction.apply(keys);
+        } catch (Throwable e) {
+            fail(keys, e);
+            return;
+        }
+        for (K key : keys) {
+            CompletableFuture<T> future = inFlight.remove(key);
+            if (future != null) {
+                future.complete(values == null ? null : values.get(key));
+            }
+        }
+    }
+
+    private void fail(List<K> keys, Throwable e) {
+        for (K key : keys) {
+            CompletableFuture<T> future = inFlight.remove(key);
+            if (future != null) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cn.mapway.dao;
+
+import lombok.Getter;
+
+/**
+ * 批量写入中一个批次的统计
+ *
+ * @author zhangjianshe
+ */
+@Getter
+public class BulkChunk {
+    /**
+     * 批次序号, 从 0 开始
+     */
+    private final int index;
+    /**
+     * 批次的行数
+     */
+    private final int rows;
+    /**
+     * 数据库返回的影响行数
+     */
+    private final int affected;
+    /**
+     * 写入耗时(纳秒), 包括这个批次触发的事务提交
+     */
+    private final long nanos;
+
+    public BulkChunk(int index, int rows, int affected, long nanos) {
+        this.index = index;
+        this.rows = rows;
+        this.affected = affected;
+        this.nanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "chunk " + index + " rows=" + rows + " affected=" + affected + " " + nanos / 1000000 + "ms";
+    }
+}
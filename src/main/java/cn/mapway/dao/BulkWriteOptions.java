@@ -0,0 +1,51 @@
+package cn.mapway.dao;
+
+import lombok.Data;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * 批量写入的参数
+ *
+ * @author zhangjianshe
+ */
+@Data
+public class BulkWriteOptions {
+    /**
+     * 每个 JDBC 批次的行数
+     */
+    private int batchSize = 1000;
+
+    /**
+     * 每个事务包含的批次数量, 小于等于 0 时不开启事务, 由连接自动提交
+     */
+    private int commitInterval = 1;
+
+    /**
+     * 是否在后台线程中执行写入, 调用线程同时准备下一个批次.
+     * 后台线程不在调用者的事务中, 调用者已经开启事务时写入会抛出 IllegalStateException
+     */
+    private boolean background;
+
+    /**
+     * 后台写入的线程池, 为 null 时使用批量写入专用的线程.
+     * 不要使用执行调用者自己的线程池, 线程用完以后写入任务排不上队, 调用者会一直等待
+     */
+    private Executor executor;
+
+    /**
+     * 每个批次写入以后的回调, 在执行写入的线程中调用
+     */
+    private Consumer<BulkChunk> listener;
+
+    /**
+     * @param batchSize 每个 JDBC 批次的行数
+     * @return options
+     */
+    public static BulkWriteOptions of(int batchSize) {
+        BulkWriteOptions options = new BulkWriteOptions();
+        options.setBatchSize(batchSize);
+        return options;
+    }
+}
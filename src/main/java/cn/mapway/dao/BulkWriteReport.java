@@ -0,0 +1,64 @@
+package cn.mapway.dao;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 批量写入的结果
+ *
+ * @author zhangjianshe
+ */
+@Getter
+public class BulkWriteReport {
+    /**
+     * 写入的总行数
+     */
+    private long rows;
+    /**
+     * 数据库返回的影响行数
+     */
+    private long affected;
+    /**
+     * 总耗时(纳秒)
+     */
+    private long elapsedNanos;
+    /**
+     * 所有批次中写入耗时的合计(纳秒), 后台写入时小于总耗时的部分和准备数据重叠
+     */
+    private long writeNanos;
+    private final List<BulkChunk> chunks = new ArrayList<>();
+
+    void add(BulkChunk chunk) {
+        chunks.add(chunk);
+        rows += chunk.getRows();
+        affected += chunk.getAffected();
+        writeNanos += chunk.getNanos();
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 每个批次的统计
+     */
+    public List<BulkChunk> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    /**
+     * @return 每秒写入的行数
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos <= 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "rows=" + rows + " affected=" + affected + " chunks=" + chunks.size()
+                + " elapsed=" + elapsedNanos / 1000000 + "ms write=" + writeNanos / 1000000 + "ms";
+    }
+}
@@ -0,0 +1,229 @@
+package cn.mapway.dao;
+
+import org.nutz.dao.DaoException;
+import org.nutz.trans.Trans;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+
+/**
+ * 批量写入的执行过程
+ * 把数据按 batchSize 分成批次, 每个批次调用一次写入函数, 每 commitInterval 个批次提交一次事务.
+ * 后台写入时调用线程准备批次, 写入线程执行批次, 两者之间最多缓存两个批次.
+ * <p>
+ * Nutz 的事务绑定在线程上, 后台线程中的写入不会加入调用者的事务, 所以调用者已经开启事务时不能使用后台写入.
+ * 后台写入缺省使用专用的线程, 每次写入占用一个线程直到结束, 不和业务任务争用 BizExecutors 的线程池.
+ *
+ * @param <T> 实体类型
+ * @author zhangjianshe
+ */
+final class BulkWriter<T> {
+
+    private static final List<Object> END = new ArrayList<>(0);
+    private static final List<Object> ABORT = new ArrayList<>(0);
+
+    private static final AtomicInteger WRITERS = new AtomicInteger();
+
+    /**
+     * 后台写入使用的线程池, 不排队, 每次写入使用一个空闲线程或者新建线程
+     */
+    private static final ThreadPoolExecutor BACKGROUND = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+            new SynchronousQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "biz-bulk-writer-" + WRITERS.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BulkWriteOptions options;
+    private final ToIntFunction<List<T>> writer;
+    private final BulkWriteReport report = new BulkWriteReport();
+    private int chunkIndex;
+    private int chunksInTransaction;
+    private boolean inTransaction;
+    private volatile Throwable failure;
+
+    BulkWriter(BulkWriteOptions options, ToIntFunction<List<T>> writer) {
+        if (options.getBatchSize() <= 0) {
+            throw new IllegalArgumentException("batchSize 必须大于 0");
+        }
+        if (options.isBackground() && Trans.get() != null) {
+            throw new IllegalStateException("事务中不能使用后台批量写入, 后台线程不在调用者的事务中");
+        }
+        this.options = options;
+        this.writer = writer;
+    }
+
+    BulkWriteReport run(Iterable<T> rows) {
+        long start = System.nanoTime();
+        if (rows != null) {
+            if (options.isBackground()) {
+                runBackground(rows.iterator());
+            } else {
+                try {
+                    Iterator<T> iterator = rows.iterator();
+                    List<T> chunk;
+                    while (!(chunk = nextChunk(iterator)).isEmpty()) {
+                        write(chunk);
+                    }
+                    commit();
+                } catch (RuntimeException | Error e) {
+                    rollback();
+                    throw e;
+                }
+            }
+        }
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runBackground(Iterator<T> iterator) {
+        BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(2);
+        Executor executor = options.getExecutor() == null ? BACKGROUND : options.getExecutor();
+        CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
+            try {
+                while (true) {
+                    List<T> chunk = queue.take();
+                    if (chunk == END) {
+                        break;
+                    }
+                    if (chunk == ABORT) {
+                        rollback();
+                        return;
+                    }
+                    write(chunk);
+                }
+                commit();
+            } catch (Throwable e) {
+                failure = e;
+                rollback();
+                throw new CompletionException(e);
+            }
+        }, executor);
+        try {
+            List<T> chunk;
+            while (!(chunk = nextChunk(iterator)).isEmpty()) {
+                offer(queue, chunk, future);
+            }
+            offer(queue, (List<T>) (List<?>) END, future);
+            future.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abort(queue);
+            throw new DaoException(e);
+        } catch (RuntimeException | Error e) {
+            // 读取数据失败, 通知写入线程回滚
+            abort(queue);
+            throw e;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void abort(BlockingQueue<List<T>> queue) {
+        // 只有调用线程放入批次, 清空以后一定有空间
+        queue.clear();
+        queue.offer((List<T>) (List<?>) ABORT);
+    }
+
+    private void offer(BlockingQueue<List<T>> queue, List<T> chunk, CompletableFuture<Void> future) throws InterruptedException {
+        while (!queue.offer(chunk, 100, TimeUnit.MILLISECONDS)) {
+            if (failure != null || future.isDone()) {
+                future.join();
+                throw new DaoException("后台写入已经结束");
+            }
+        }
+    }
+
+    private List<T> nextChunk(Iterator<T> iterator) {
+        int size = options.getBatchSize();
+        List<T> chunk = new ArrayList<>(size);
+        while (chunk.size() < size && iterator.hasNext()) {
+            T row = iterator.next();
+            if (row != null) {
+                chunk.add(row);
+            }
+        }
+        return chunk;
+    }
+
+    private void write(List<T> chunk) {
+        long start = System.nanoTime();
+        if (options.getCommitInterval() > 0 && !inTransaction) {
+            try {
+                Trans.begin();
+            } catch (Exception e) {
+                throw unwrap(e);
+            }
+            inTransaction = true;
+        }
+        int affected = writer.applyAsInt(chunk);
+        if (inTransaction && ++chunksInTransaction >= options.getCommitInterval()) {
+            commit();
+        }
+        BulkChunk stat = new BulkChunk(chunkIndex++, chunk.size(), affected, System.nanoTime() - start);
+        report.add(stat);
+        if (options.getListener() != null) {
+            options.getListener().accept(stat);
+        }
+    }
+
+    private void commit() {
+        if (!inTransaction) {
+            return;
+        }
+        inTransaction = false;
+        chunksInTransaction = 0;
+        try {
+            Trans.commit();
+        } catch (Exception e) {
+            closeTransaction();
+            throw unwrap(e);
+        }
+        closeTransaction();
+    }
+
+    private void rollback() {
+        if (!inTransaction) {
+            return;
+        }
+        inTransaction = false;
+        chunksInTransaction = 0;
+        try {
+            Trans.rollback();
+        } catch (Exception ignored) {
+            // 保留原来的异常
+        }
+        closeTransaction();
+    }
+
+    private static void closeTransaction() {
+        try {
+            Trans.close();
+        } catch (Exception ignored) {
+            // 连接已经由事务释放
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new DaoException(e);
+    }
+}
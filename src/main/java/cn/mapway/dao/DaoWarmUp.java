@@ -0,0 +1,184 @@
+package cn.mapway.dao;
+
+import org.nutz.dao.Dao;
+import org.nutz.dao.entity.Entity;
+import org.nutz.dao.sql.Pojo;
+import org.nutz.dao.sql.PojoMaker;
+import org.nutz.dao.util.Pojos;
+import org.nutz.resource.Scans;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动时预热 DAO
+ * 预先解析 DAO 的实体类型并建立 Nutz 的 Entity 映射, 第一次请求不再承担注解扫描和表结构读取的开销.
+ * Nutz 不缓存生成的 SQL, 每次请求仍然会重新生成语句.
+ * 设置 prepareStatements 时生成常用的 fetch insert update delete count 语句, 在一个连接上预编译一次,
+ * 只能让驱动提前加载相关的类, 连接池或者驱动缓存预编译语句时才能省去之后的预编译.
+ * <pre>
+ * WarmUpReport report = new DaoWarmUp(dao)
+ *         .scan("com.example.dao")
+ *         .registerKnown()
+ *         .prepareStatements(true)
+ *         .run();
+ * </pre>
+ *
+ * @author zhangjianshe
+ */
+public class DaoWarmUp {
+
+    private final Dao dao;
+    /**
+     * 实体类 -&gt; DAO 类型, 直接注册的实体类 DAO 类型为 null
+     */
+    private final Map<Class<?>, Class<?>> targets = new LinkedHashMap<>();
+    private final Map<Class<?>, Throwable> unresolved = new LinkedHashMap<>();
+    private boolean prepareStatements;
+
+    /**
+     * @param dao 用于建立实体映射和预编译语句的 Dao
+     */
+    public DaoWarmUp(Dao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * 注册 DAO 类型
+     *
+     * @param daoTypes BaseDao 的子类
+     * @return this
+     */
+    public DaoWarmUp register(Class<?>... daoTypes) {
+        for (Class<?> daoType : daoTypes) {
+            try {
+                targets.putIfAbsent(EntityRegistry.entityClass(daoType), daoType);
+            } catch (IllegalArgumentException e) {
+                unresolved.put(daoType, e);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 注册 DAO 实例, 使用 BaseDao(Class) 构造的 DAO 只能用这种方式注册
+     *
+     * @param daos dao
+     * @return this
+     */
+    public DaoWarmUp register(BaseDao<?>... daos) {
+        for (BaseDao<?> baseDao : daos) {
+            targets.putIfAbsent(baseDao.getEntityClass(), baseDao.getClass());
+        }
+        return this;
+    }
+
+    /**
+     * 直接注册实体类
+     *
+     * @param entityClasses 实体类
+     * @return this
+     */
+    public DaoWarmUp registerEntity(Class<?>... entityClasses) {
+        for (Class<?> entityClass : entityClasses) {
+            targets.putIfAbsent(entityClass, null);
+        }
+        return this;
+    }
+
+    /**
+     * 注册已经创建过实例的 DAO 类型
+     *
+     * @return this
+     */
+    public DaoWarmUp registerKnown() {
+        return register(EntityRegistry.knownDaoTypes().toArray(new Class<?>[0]));
+    }
+
+    /**
+     * 扫描包中的 BaseDao 子类, 不包括抽象类
+     *
+     * @param packages 包名
+     * @return this
+     */
+    public DaoWarmUp scan(String... packages) {
+        for (String packageName : packages) {
+            for (Class<?> type : Scans.me().scanPackage(packageName)) {
+                if (BaseDao.class.isAssignableFrom(type) && type != BaseDao.class
+                        && !Modifier.isAbstract(type.getModifiers()) && !type.isInterface()) {
+                    register(type);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 是否生成常用语句并在数据库连接上预编译, 连接池或者驱动缓存语句时才有效
+     *
+     * @param prepareStatements 是否预编译
+     * @return this
+     */
+    public DaoWarmUp prepareStatements(boolean prepareStatements) {
+        this.prepareStatements = prepareStatements;
+        return this;
+    }
+
+    /**
+     * 执行预热, 单个实体失败不影响其他实体
+     *
+     * @return 每个实体的耗时和错误
+     */
+    public WarmUpReport run() {
+        WarmUpReport report = new WarmUpReport();
+        long start = System.nanoTime();
+        for (Map.Entry<Class<?>, Throwable> failed : unresolved.entrySet()) {
+            report.add(new WarmUpReport.Item(failed.getKey(), null, 0, 0, 0, failed.getValue()));
+        }
+        for (Map.Entry<Class<?>, Class<?>> target : targets.entrySet()) {
+            report.add(warmUp(target.getValue(), target.getKey()));
+        }
+        report.finish(System.nanoTime() - start);
+        return report;
+    }
+
+    private WarmUpReport.Item warmUp(Class<?> daoType, Class<?> entityClass) {
+        long start = System.nanoTime();
+        List<String> statements = new ArrayList<>();
+        int[] prepared = new int[1];
+        try {
+            Entity<?> entity = EntityRegistry.entity(dao, entityClass);
+            if (!prepareStatements) {
+                return new WarmUpReport.Item(daoType, entityClass, 0, 0, System.nanoTime() - start, null);
+            }
+            PojoMaker maker = dao.pojoMaker();
+            statements.add(sql(maker.makeInsert(entity), entity));
+            statements.add(sql(maker.makeFunc(entity.getViewName(), "COUNT", "*"), entity));
+            if (entity.getIdField() != null) {
+                statements.add(sql(maker.makeQuery(entity).append(Pojos.Items.cndId(entity, 0)), entity));
+                statements.add(sql(maker.makeUpdate(entity, null).append(Pojos.Items.cndId(entity, 0)), entity));
+                statements.add(sql(maker.makeDelete(entity).append(Pojos.Items.cndId(entity, 0)), entity));
+            }
+            if (entity.getNameField() != null) {
+                statements.add(sql(maker.makeQuery(entity).append(Pojos.Items.cndName(entity, "")), entity));
+            }
+            dao.run(connection -> {
+                for (String sql : statements) {
+                    connection.prepareStatement(sql).close();
+                    prepared[0]++;
+                }
+            });
+            return new WarmUpReport.Item(daoType, entityClass, statements.size(), prepared[0], System.nanoTime() - start, null);
+        } catch (Exception e) {
+            return new WarmUpReport.Item(daoType, entityClass, statements.size(), prepared[0], System.nanoTime() - start, e);
+        }
+    }
+
+    private static String sql(Pojo pojo, Entity<?> entity) {
+        pojo.setEntity(entity);
+        return pojo.toPreparedStatement();
+    }
+}
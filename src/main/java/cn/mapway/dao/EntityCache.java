@@ -0,0 +1,43 @@
+package cn.mapway.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 为 BaseDao 开启实体缓存
+ * 可以声明在 BaseDao 的子类上, 也可以声明在实体类上
+ * <pre>
+ * &#64;EntityCache(maxSize = 2000, ttlSeconds = 600)
+ * public class RegionDao extends BaseDao&lt;Region&gt; {
+ * }
+ * </pre>
+ * fetch(id) fetch(name) fetchx(pks) 先读缓存, BaseDao 的写方法会自动让相关的缓存失效.
+ * 缓存的实体被所有调用者共享, 读取以后不能直接修改
+ *
+ * @author zhangjianshe
+ * @see BaseDao#enableCache(int, long)
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface EntityCache {
+
+    /**
+     * 最多缓存的键数量, 超过以后淘汰最久没有访问的
+     *
+     * @return size
+     */
+    int maxSize() default 10000;
+
+    /**
+     * 缓存的有效时间, 小于等于 0 表示不过期
+     *
+     * @return seconds
+     */
+    long ttlSeconds() default 300;
+}
@@ -0,0 +1,165 @@
+package cn.mapway.dao;
+
+import org.nutz.dao.Condition;
+import org.nutz.dao.Dao;
+import org.nutz.dao.DaoException;
+import org.nutz.dao.entity.Entity;
+import org.nutz.dao.impl.DaoSupport;
+import org.nutz.dao.jdbc.ValueAdaptor;
+import org.nutz.dao.sql.Pojo;
+import org.nutz.dao.util.Pojos;
+import org.nutz.trans.Trans;
+import org.nutz.trans.Transaction;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 只进的数据库游标
+ * 第一次读取时才执行查询并占用连接, 之后逐行读取并转换为实体对象, 关闭以后释放结果集 语句和连接.
+ * 在 Nutz 事务中使用事务的连接, 否则占用一个独立的连接, 并且关闭自动提交以便 PostgreSQL 等数据库使用服务端游标
+ *
+ * @param <T> 实体类型
+ * @author zhangjianshe
+ */
+class EntityCursor<T> implements Iterator<T>, AutoCloseable {
+
+    private final Entity<T> entity;
+    private final DataSource dataSource;
+    private final Pojo pojo;
+    private final int fetchSize;
+    private boolean opened;
+    private Connection connection;
+    private boolean ownConnection;
+    private boolean autoCommit;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+    private Boolean ready;
+    private boolean closed;
+
+    EntityCursor(Dao dao, Entity<T> entity, Condition cnd, int fetchSize) {
+        if (!(dao instanceof DaoSupport)) {
+            throw new IllegalStateException("stream 需要直接访问数据源, 只支持 NutDao 等 DaoSupport 的实现, 当前为 "
+                    + dao.getClass().getName());
+        }
+        this.entity = entity;
+        this.dataSource = ((DaoSupport) dao).getDataSource();
+        this.fetchSize = fetchSize;
+        this.pojo = dao.pojoMaker().makeQuery(entity).append(Pojos.Items.cnd(cnd));
+        this.pojo.setEntity(entity);
+    }
+
+    /**
+     * 第一次读取时执行查询
+     */
+    private void open() {
+        opened = true;
+        try {
+            Transaction transaction = Trans.get();
+            if (transaction == null) {
+                connection = dataSource.getConnection();
+                ownConnection = true;
+                autoCommit = connection.getAutoCommit();
+                if (autoCommit) {
+                    connection.setAutoCommit(false);
+                }
+            } else {
+                connection = transaction.getConnection(dataSource);
+            }
+            statement = connection.prepareStatement(pojo.toPreparedStatement(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            Object[][] matrix = pojo.getParamMatrix();
+            if (matrix.length > 0) {
+                ValueAdaptor[] adaptors = pojo.getAdaptors();
+                for (int i = 0; i < adaptors.length; i++) {
+                    adaptors[i].set(statement, matrix[0][i], i + 1);
+                }
+            }
+            resultSet = statement.executeQuery();
+        } catch (Exception e) {
+            close();
+            throw new DaoException(e);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (ready == null) {
+            if (closed) {
+                return false;
+            }
+            if (!opened) {
+                open();
+            }
+            try {
+                ready = resultSet.next();
+            } catch (SQLException e) {
+                close();
+                throw new DaoException(e);
+            }
+            if (!ready) {
+                close();
+            }
+        }
+        return ready;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        ready = null;
+        try {
+            return entity.getObject(resultSet, null);
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        ready = Boolean.FALSE;
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+        } catch (SQLException ignored) {
+            // 继续释放语句和连接
+        }
+        try {
+            if (statement != null) {
+                statement.close();
+            }
+        } catch (SQLException ignored) {
+            // 继续释放连接
+        }
+        if (ownConnection && connection != null) {
+            try {
+                // 只读查询, 结束游标所在的事务
+                connection.rollback();
+                if (autoCommit) {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException ignored) {
+                // 连接仍然需要关闭
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                throw new DaoException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package cn.mapway.dao;
+
+import org.nutz.dao.Dao;
+import org.nutz.dao.entity.Entity;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * BaseDao 的实体类型注册表
+ * 每个 DAO 类型的实体类只解析一次, 每个实体类的 Entity 映射对同一个 Dao 只获取一次, 结果保存在 ClassValue 中.
+ * 解析时沿着父类链传递泛型参数, 支持多层继承 (例如 UserDao extends AbstractDao&lt;User&gt; extends BaseDao&lt;T&gt;)
+ * 以及 CGLIB ByteBuddy 等生成的代理子类.
+ *
+ * @author zhangjianshe
+ */
+public final class EntityRegistry {
+
+    private static final TypeVariable<?> ENTITY_TYPE = BaseDao.class.getTypeParameters()[0];
+
+    private static final ClassValue<Class<?>> ENTITY_CLASS = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> daoType) {
+            Class<?> entityClass = resolve(daoType);
+            KNOWN.add(daoType);
+            return entityClass;
+        }
+    };
+
+    /**
+     * 弱引用保存, 不阻止 DAO 类型所在的 ClassLoader 被卸载
+     */
+    private static final Set<Class<?>> KNOWN = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private static final ClassValue<Binding[]> ENTITY = new ClassValue<Binding[]>() {
+        @Override
+        protected Binding[] computeValue(Class<?> entityClass) {
+            return new Binding[1];
+        }
+    };
+
+    private EntityRegistry() {
+    }
+
+    /**
+     * DAO 类型对应的实体类
+     *
+     * @param daoType BaseDao 的子类
+     * @return 实体类
+     * @throws IllegalArgumentException 不是 BaseDao 的子类, 或者实体类型没有在类声明中确定
+     */
+    public static Class<?> entityClass(Class<?> daoType) {
+        return ENTITY_CLASS.get(daoType);
+    }
+
+    /**
+     * 实体类的 Entity 映射
+     *
+     * @param dao         Dao
+     * @param entityClass 实体类
+     * @param <T>         实体类型
+     * @return Entity
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Entity<T> entity(Dao dao, Class<T> entityClass) {
+        Binding[] holder = ENTITY.get(entityClass);
+        Binding binding = holder[0];
+        if (binding != null && binding.dao == dao) {
+            return (Entity<T>) binding.entity;
+        }
+        Entity<T> entity = dao.getEntity(entityClass);
+        holder[0] = new Binding(dao, entity);
+        return entity;
+    }
+
+    /**
+     * 预先解析 DAO 类型和实体映射, 避免第一次请求时解析
+     *
+     * @param dao      Dao
+     * @param daoTypes BaseDao 的子类
+     */
+    public static void warmUp(Dao dao, Class<?>... daoTypes) {
+        for (Class<?> daoType : daoTypes) {
+            entity(dao, entityClass(daoType));
+        }
+    }
+
+    /**
+     * 已经解析过的 DAO 类型, 通常是已经创建过实例的 DAO. 已经卸载的类型不再返回
+     *
+     * @return DAO 类型
+     */
+    public static List<Class<?>> knownDaoTypes() {
+        return new ArrayList<>(KNOWN);
+    }
+
+    private static Class<?> resolve(Class<?> daoType) {
+        if (!BaseDao.class.isAssignableFrom(daoType)) {
+            throw new IllegalArgumentException(daoType.getName() + " 不是 BaseDao 的子类");
+        }
+        Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+        Class<?> current = daoType;
+        while (current != BaseDao.class) {
+            Type superType = current.getGenericSuperclass();
+            if (superType instanceof ParameterizedType) {
+                ParameterizedType parameterized = (ParameterizedType) superType;
+                TypeVariable<?>[] variables = ((Class<?>) parameterized.getRawType()).getTypeParameters();
+                Type[] arguments = parameterized.getActualTypeArguments();
+                for (int i = 0; i < variables.length; i++) {
+                    Type argument = arguments[i];
+                    if (argument instanceof TypeVariable) {
+                        argument = bindings.get(argument);
+                    }
+                    if (argument != null) {
+                        bindings.put(variables[i], argument);
+                    }
+                }
+            }
+            current = current.getSuperclass();
+        }
+        Class<?> entityClass = toClass(bindings.get(ENTITY_TYPE));
+        if (entityClass == null) {
+            throw new IllegalArgumentException(daoType.getName() + " 没有确定 BaseDao 的实体类型, 请使用 BaseDao(Class) 构造函数");
+        }
+        return entityClass;
+    }
+
+    private static Class<?> toClass(Type type) {
+        if (type instanceof Class) {
+            return (Class<?>) type;
+        }
+        if (type instanceof ParameterizedType) {
+            return (Class<?>) ((ParameterizedType) type).getRawType();
+        }
+        return null;
+    }
+
+    /**
+     * Dao 和它的 Entity 映射, 作为一个整体替换
+     */
+    private static final class Binding {
+        final Dao dao;
+        final Entity<?> entity;
+
+        Binding(Dao dao, Entity<?> entity) {
+            this.dao = dao;
+            this.entity = entity;
+        }
+    }
+}
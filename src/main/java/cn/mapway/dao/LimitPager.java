@@ -0,0 +1,32 @@
+package cn.mapway.dao;
+
+import org.nutz.dao.pager.Pager;
+
+/**
+ * 偏移量和记录数独立的翻页对象
+ * Pager 的偏移量固定为 pageSize * (pageNumber - 1), 需要多查询一条记录判断是否有下一页时
+ * 用这个类保持原来的偏移量
+ *
+ * @author zhangjianshe
+ */
+class LimitPager extends Pager {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int offset;
+
+    /**
+     * @param pageNumber 第几页, 从 1 开始
+     * @param pageSize   每页记录数
+     * @param limit      实际查询的记录数
+     */
+    LimitPager(int pageNumber, int pageSize, int limit) {
+        super(pageNumber, limit);
+        this.offset = pageSize * (pageNumber - 1);
+    }
+
+    @Override
+    public int getOffset() {
+        return offset;
+    }
+}
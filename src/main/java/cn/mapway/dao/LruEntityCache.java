@@ -0,0 +1,310 @@
+package cn.mapway.dao;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分段加锁的 LRU 实体缓存
+ * 一个实体按照它所有的主键 (@Id @Name @PK) 缓存, 通过任何一个键失效 过期或者被淘汰时, 其他的键一起移除.
+ * 每次失效都会增加版本号, 从数据库加载之前先读取 {@link #stamp()}, 加载以后用 {@link #put(List, Object, long)} 放入,
+ * 期间有过失效时不放入, 避免并发的更新之后旧数据被重新放回缓存.
+ * 缓存的实体被所有调用者共享, 调用者不能修改
+ *
+ * @param <T> 实体类型
+ * @author zhangjianshe
+ */
+public class LruEntityCache<T> {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment<T>[] segments;
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * @param maxSize    最多缓存的键数量
+     * @param ttlSeconds 缓存的有效时间, 小于等于 0 表示不过期
+     */
+    @SuppressWarnings("unchecked")
+    public LruEntityCache(int maxSize, long ttlSeconds) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize 必须大于 0");
+        }
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlSeconds <= 0 ? 0 : TimeUnit.SECONDS.toNanos(ttlSeconds);
+        int count = Math.max(1, Math.min(MAX_SEGMENTS, maxSize / 64));
+        segments = (Segment<T>[]) new Segment<?>[count];
+        int perSegment = (maxSize + count - 1) / count;
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment<>(perSegment, evictions);
+        }
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param key 键
+     * @return 没有缓存或者已经过期时返回 null
+     */
+    public T get(Object key) {
+        Segment<T> segment = segmentFor(key);
+        CacheEntry<T> entry;
+        CacheEntry<T> expired = null;
+        synchronized (segment) {
+            entry = segment.get(key);
+            if (entry != null && entry.isExpired()) {
+                segment.remove(key);
+                evictions.increment();
+                expired = entry;
+                entry = null;
+            }
+        }
+        if (expired != null) {
+            removeOthers(key, expired);
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.value;
+    }
+
+    /**
+     * 当前的失效版本, 从数据库加载之前读取
+     *
+     * @return 版本号
+     */
+    public long stamp() {
+        return version.get();
+    }
+
+    /**
+     * 按照实体所有的键缓存
+     *
+     * @param keys  实体的键
+     * @param value 实体
+     */
+    public void put(List<Object> keys, T value) {
+        store(keys, value);
+    }
+
+    /**
+     * 按照实体所有的键缓存, 读取 stamp 以后有过失效时不缓存
+     *
+     * @param keys  实体的键
+     * @param value 从数据库加载的实体
+     * @param stamp 加载之前读取的 {@link #stamp()}
+     * @return 是否放入了缓存
+     */
+    public boolean put(List<Object> keys, T value, long stamp) {
+        if (version.get() != stamp) {
+            return false;
+        }
+        CacheEntry<T> entry = store(keys, value);
+        // 放入期间发生的失效可能已经错过了这个实体, 自己移除
+        if (version.get() != stamp) {
+            for (Object key : keys) {
+                removeKey(key, entry);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private CacheEntry<T> store(List<Object> keys, T value) {
+        CacheEntry<T> entry = new CacheEntry<>(value, keys, ttlNanos == 0 ? 0 : System.nanoTime() + ttlNanos);
+        for (Object key : keys) {
+            Segment<T> segment = segmentFor(key);
+            CacheEntry<T> evicted;
+            synchronized (segment) {
+                segment.put(key, entry);
+                evicted = segment.takeEvicted();
+            }
+            if (evicted != null) {
+                // 淘汰的只是实体的一个键, 其他的键也要移除, 否则之后通过这个键失效时找不到其他的键
+                removeOthers(null, evicted);
+            }
+        }
+        return entry;
+    }
+
+    private void removeOthers(Object removed, CacheEntry<T> entry) {
+        for (Object other : entry.keys) {
+            if (!other.equals(removed)) {
+                removeKey(other, entry);
+            }
+        }
+    }
+
+    /**
+     * 让一个键以及同一个实体的其他键失效
+     *
+     * @param key 键
+     */
+    public void invalidate(Object key) {
+        version.incrementAndGet();
+        CacheEntry<T> entry = removeKey(key, null);
+        if (entry != null) {
+            invalidations.increment();
+            for (Object other : entry.keys) {
+                removeKey(other, entry);
+            }
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        version.incrementAndGet();
+        for (Segment<T> segment : segments) {
+            synchronized (segment) {
+                if (!segment.isEmpty()) {
+                    invalidations.increment();
+                    segment.clear();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 当前缓存的键数量
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return 最多缓存的键数量
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return 命中次数
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return 没有命中的次数
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * @return 因为容量或者过期淘汰的次数
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return 因为写操作失效的次数
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * @return 命中率
+     */
+    public double getHitRate() {
+        long hit = hits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    @Override
+    public String toString() {
+        return "LruEntityCache{size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+                + ", evictions=" + getEvictionCount() + ", invalidations=" + getInvalidationCount() + "}";
+    }
+
+    private CacheEntry<T> removeKey(Object key, CacheEntry<T> expected) {
+        Segment<T> segment = segmentFor(key);
+        synchronized (segment) {
+            CacheEntry<T> entry = segment.get(key);
+            if (entry == null || (expected != null && entry != expected)) {
+                return null;
+            }
+            segment.remove(key);
+            return entry;
+        }
+    }
+
+    private Segment<T> segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    private static class CacheEntry<T> {
+        final T value;
+        final List<Object> keys;
+        final long expireAt;
+
+        CacheEntry(T value, List<Object> keys, long expireAt) {
+            this.value = value;
+            this.keys = keys;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired() {
+            return expireAt != 0 && System.nanoTime() - expireAt > 0;
+        }
+    }
+
+    private static class Segment<T> extends LinkedHashMap<Object, CacheEntry<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+        private final LongAdder evictions;
+        private CacheEntry<T> evicted;
+
+        Segment(int capacity, LongAdder evictions) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+            this.evictions = evictions;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Object, CacheEntry<T>> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                evicted = eldest.getValue();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * 最近一次 put 淘汰的实体, 在持有段锁时调用
+         */
+        CacheEntry<T> takeEvicted() {
+            CacheEntry<T> entry = evicted;
+            evicted = null;
+            return entry;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package cn.mapway.dao;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * DAO 预热的结果
+ *
+ * @author zhangjianshe
+ */
+public class WarmUpReport {
+
+    private final List<Item> items = new ArrayList<>();
+    /**
+     * 总耗时(纳秒)
+     */
+    @Getter
+    private long elapsedNanos;
+
+    void add(Item item) {
+        items.add(item);
+    }
+
+    void finish(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return 每个实体的预热结果
+     */
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * @return 预热失败的数量
+     */
+    public int getFailedCount() {
+        int count = 0;
+        for (Item item : items) {
+            if (item.getError() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return 是否全部成功
+     */
+    public boolean isSuccess() {
+        return getFailedCount() == 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("warm up ").append(items.size()).append(" entities in ")
+                .append(elapsedNanos / 1000000).append("ms, failed ").append(getFailedCount());
+        for (Item item : items) {
+            builder.append("\n  ").append(item);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 一个实体的预热结果
+     */
+    @Getter
+    public static class Item {
+        /**
+         * DAO 类型, 直接注册实体类时为 null
+         */
+        private final Class<?> daoType;
+        private final Class<?> entityClass;
+        /**
+         * 生成的 SQL 语句数量, 没有设置 prepareStatements 时为 0
+         */
+        private final int statements;
+        /**
+         * 预编译的语句数量
+         */
+        private final int prepared;
+        private final long nanos;
+        private final Throwable error;
+
+        Item(Class<?> daoType, Class<?> entityClass, int statements, int prepared, long nanos, Throwable error) {
+            this.daoType = daoType;
+            this.entityClass = entityClass;
+            this.statements = statements;
+            this.prepared = prepared;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        @Override
+        public String toString() {
+            String name = entityClass == null ? String.valueOf(daoType) : entityClass.getName();
+            return name + " sql=" + statements + " prepared=" + prepared + " " + nanos / 1000 + "us"
+                    + (error == null ? "" : " error=" + error);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package cn.mapway.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 异步写入缓冲区
+ * 多个线程通过 offer 放入数据, 一个后台线程在数据达到 batchSize 或者最早的数据等待超过 maxDelay 时批量写入.
+ * 缓冲区用无锁队列和原子计数实现容量限制, 满时按 {@link WriteBehindPolicy} 处理.
+ * 关闭标记和计数在同一个原子变量中, 关闭以后的 offer 一定失败, 关闭之前成功的 offer 一定会被写入.
+ * close 或者 JVM 退出时写入剩余的数据.
+ * <p>
+ * 写入失败的数据不会重试, 交给 errorHandler 处理, 默认只计数并保留最后一个异常.
+ *
+ * @param <T> 数据类型
+ * @author zhangjianshe
+ */
+public class WriteBehindBuffer<T> implements AutoCloseable {
+
+    /**
+     * size 中表示已经关闭的位
+     */
+    private static final int CLOSED = 1 << 30;
+
+    private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<>();
+    /**
+     * 缓冲区中的数量, 关闭以后加上 CLOSED
+     */
+    private final AtomicInteger size = new AtomicInteger();
+    private final int capacity;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final WriteBehindPolicy policy;
+    private final Consumer<List<T>> batchWriter;
+    private final Consumer<T> callerWriter;
+    private volatile BiConsumer<List<T>, Throwable> errorHandler;
+    private final Thread flusher;
+    private final Thread shutdownHook;
+    private volatile long firstOfferNanos;
+    private final AtomicInteger flushRequests = new AtomicInteger();
+    private volatile Throwable lastError;
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private volatile long maxFlushNanos;
+    private volatile long lastFlushNanos;
+
+    /**
+     * @param name           后台线程的名字
+     * @param capacity       缓冲区容量
+     * @param batchSize      每次批量写入的最大数量
+     * @param maxDelayMillis 数据在缓冲区中的最长等待时间
+     * @param policy         缓冲区满时的处理方式
+     * @param batchWriter    批量写入
+     * @param callerWriter   CALLER_RUNS 时在调用线程中写入一条数据
+     */
+    public WriteBehindBuffer(String name, int capacity, int batchSize, long maxDelayMillis, WriteBehindPolicy policy,
+                             Consumer<List<T>> batchWriter, Consumer<T> callerWriter) {
+        if (capacity <= 0 || batchSize <= 0 || capacity >= CLOSED) {
+            throw new IllegalArgumentException("capacity 和 batchSize 必须大于 0, capacity 必须小于 " + CLOSED);
+        }
+        this.capacity = capacity;
+        this.batchSize = Math.min(batchSize, capacity);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, maxDelayMillis));
+        this.policy = policy == null ? WriteBehindPolicy.BLOCK : policy;
+        this.batchWriter = batchWriter;
+        this.callerWriter = callerWriter;
+        this.flusher = new Thread(this::runFlusher, name);
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+        this.shutdownHook = new Thread(this::closeQuietly, name + "-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * 放入一条数据
+     *
+     * @param item 数据
+     * @return 放入缓冲区或者已经同步写入时返回 true, 被丢弃时返回 false
+     */
+    public boolean offer(T item) {
+        if (item == null) {
+            throw new NullPointerException("item");
+        }
+        offered.increment();
+        while (true) {
+            int current = size.get();
+            if ((current & CLOSED) != 0) {
+                throw new IllegalStateException("WriteBehindBuffer 已经关闭");
+            }
+            if (current < capacity) {
+                if (size.compareAndSet(current, current + 1)) {
+                    if (current == 0) {
+                        firstOfferNanos = System.nanoTime();
+                    }
+                    queue.offer(item);
+                    // 第一条数据开始计时, 达到 batchSize 立即写入
+                    if (current == 0 || current + 1 >= batchSize) {
+                        LockSupport.unpark(flusher);
+                    }
+                    return true;
+                }
+                continue;
+            }
+            switch (policy) {
+                case DROP:
+                    dropped.increment();
+                    return false;
+                case CALLER_RUNS:
+                    callerRuns.increment();
+                    callerWriter.accept(item);
+                    return true;
+                default:
+                    LockSupport.unpark(flusher);
+                    LockSupport.parkNanos(this, 100_000L);
+            }
+        }
+    }
+
+    /**
+     * 立即写入缓冲区中的数据, 不等待写入完成
+     */
+    public void flush() {
+        flushRequests.incrementAndGet();
+        LockSupport.unpark(flusher);
+    }
+
+    /**
+     * 停止接收数据, 写入剩余的数据
+     */
+    @Override
+    public void close() {
+        if (!markClosed()) {
+            return;
+        }
+        LockSupport.unpark(flusher);
+        try {
+            // 后台线程在计数为 0 以后才结束, 关闭之前成功的 offer 都已经写入
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException ignored) {
+            // JVM 正在退出
+        }
+    }
+
+    /**
+     * 设置关闭标记, 之后的 offer 都会失败
+     *
+     * @return 是否由这次调用关闭
+     */
+    private boolean markClosed() {
+        while (true) {
+            int current = size.get();
+            if ((current & CLOSED) != 0) {
+                return false;
+            }
+            if (size.compareAndSet(current, current | CLOSED)) {
+                return true;
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        markClosed();
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            int state = size.get();
+            boolean closed = (state & CLOSED) != 0;
+            int current = state & ~CLOSED;
+            if (current == 0) {
+                if (closed) {
+                    return;
+                }
+                flushRequests.set(0);
+                LockSupport.park(this);
+                continue;
+            }
+            long wait = maxDelayNanos - (System.nanoTime() - firstOfferNanos);
+            if (current < batchSize && wait > 0 && !closed && flushRequests.get() == 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            flushRequests.set(0);
+            drain();
+        }
+    }
+
+    private void drain() {
+        List<T> batch = new ArrayList<>(batchSize);
+        T item;
+        while (batch.size() < batchSize && (item = queue.poll()) != null) {
+            batch.add(item);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        // 先记录时间再释放容量, 新放入的数据从这里开始计算等待时间
+        firstOfferNanos = System.nanoTime();
+        size.addAndGet(-batch.size());
+        long start = System.nanoTime();
+        try {
+            batchWriter.accept(batch);
+            written.add(batch.size());
+        } catch (Throwable e) {
+            failed.add(batch.size());
+            lastError = e;
+            BiConsumer<List<T>, Throwable> handler = errorHandler;
+            if (handler != null) {
+                try {
+                    handler.accept(batch, e);
+                } catch (Throwable ignored) {
+                    // 错误处理失败不能中断写入线程
+                }
+            }
+        }
+        long nanos = System.nanoTime() - start;
+        flushes.increment();
+        flushNanos.add(nanos);
+        lastFlushNanos = nanos;
+        if (nanos > maxFlushNanos) {
+            maxFlushNanos = nanos;
+        }
+    }
+
+    /**
+     * @param errorHandler 写入失败时的回调, 参数为这一批数据和异常
+     */
+    public void setErrorHandler(BiConsumer<List<T>, Throwable> errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @return 缓冲区中等待写入的数量
+     */
+    public int getQueueDepth() {
+        return size.get() & ~CLOSED;
+    }
+
+    /**
+     * @return 缓冲区容量
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return offer 调用次数
+     */
+    public long getOfferedCount() {
+        return offered.sum();
+    }
+
+    /**
+     * @return 缓冲区满时丢弃的数量
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return 缓冲区满时在调用线程中写入的数量
+     */
+    public long getCallerRunsCount() {
+        return callerRuns.sum();
+    }
+
+    /**
+     * @return 后台写入成功的数量
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return 后台写入失败的数量
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * @return 批量写入的次数
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * @return 平均每次批量写入的耗时(纳秒)
+     */
+    public long getAverageFlushNanos() {
+        long count = flushes.sum();
+        return count == 0 ? 0 : flushNanos.sum() / count;
+    }
+
+    /**
+     * @return 最近一次批量写入的耗时(纳秒)
+     */
+    public long getLastFlushNanos() {
+        return lastFlushNanos;
+    }
+
+    /**
+     * @return 最长一次批量写入的耗时(纳秒)
+     */
+    public long getMaxFlushNanos() {
+        return maxFlushNanos;
+    }
+
+    /**
+     * @return 最后一次写入失败的异常
+     */
+    public Throwable getLastError() {
+        return lastError;
+    }
+}
@@ -0,0 +1,21 @@
+package cn.mapway.dao;
+
+/**
+ * 异步写入缓冲区满时的处理方式
+ *
+ * @author zhangjianshe
+ */
+public enum WriteBehindPolicy {
+    /**
+     * 等待缓冲区有空间
+     */
+    BLOCK,
+    /**
+     * 丢弃这条数据
+     */
+    DROP,
+    /**
+     * 在调用线程中同步写入
+     */
+    CALLER_RUNS
+}
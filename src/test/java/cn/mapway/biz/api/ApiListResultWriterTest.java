@@ -0,0 +1,76 @@
+package cn.mapway.biz.api;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class ApiListResultWriterTest {
+
+    /**
+     * 记录 flush 次数
+     */
+    private static class CountingWriter extends StringWriter {
+        int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+            super.flush();
+        }
+    }
+
+    @Test
+    public void flushesOnlyAtEnd() {
+        CountingWriter out = new CountingWriter();
+        ApiListResultWriter writer = new ApiListResultWriter(out);
+        writer.begin(200, "ok", 1L, 10L, null);
+        for (int i = 0; i < 100; i++) {
+            writer.row(Collections.singletonMap("id", i));
+        }
+        assertEquals(0, out.flushes);
+        assertEquals(100, writer.end());
+        assertEquals(1, out.flushes);
+    }
+
+    @Test
+    public void output() {
+        StringWriter out = new StringWriter();
+        ApiListResultWriter writer = new ApiListResultWriter(out);
+        writer.begin(200, "ok", 1L, 10L, null);
+        writer.row(Collections.singletonMap("id", 1));
+        writer.row("a\"b");
+        writer.end();
+        assertEquals("{\"code\":200,\"message\":\"ok\",\"page\":1,\"pageSize\":10,\"data\":[{\"id\":1},\"a\\\"b\"],\"total\":2}",
+                out.toString());
+    }
+
+    @Test
+    public void cursorFollowsPageInfo() {
+        StringWriter out = new StringWriter();
+        ApiListResultWriter writer = new ApiListResultWriter(out);
+        writer.begin(200, "ok", null, 2L, 5L, "TDI");
+        writer.row(1);
+        writer.row(2);
+        writer.end();
+        assertEquals("{\"code\":200,\"message\":\"ok\",\"pageSize\":2,\"total\":5,\"cursor\":\"TDI\",\"data\":[1,2]}",
+                out.toString());
+    }
+
+    @Test
+    public void streamingResultWritesCursor() {
+        StringWriter out = new StringWriter();
+        long rows = StreamingApiListResult.success(Stream.of(1, 2)).page(null, 2L, null).cursor("TDI").writeTo(out);
+        assertEquals(2, rows);
+        assertEquals("{\"code\":200,\"message\":\"操作成功\",\"pageSize\":2,\"cursor\":\"TDI\",\"data\":[1,2],\"total\":2}",
+                out.toString());
+
+        out = new StringWriter();
+        StreamingApiListResult.success(Collections.singletonList(1)).writeTo(out);
+        assertFalse(out.toString().contains("cursor"));
+    }
+}
@@ -0,0 +1,78 @@
+package cn.mapway.biz.constant;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void indexedPlaceholders() {
+        assertEquals("b-a-b", MessageTemplate.format("{1}-{0}-{1}", "a", "b"));
+    }
+
+    @Test
+    public void sequentialPlaceholders() {
+        assertEquals("用户 tom 不存在 1", MessageTemplate.format("用户 {} 不存在 {}", "tom", "1"));
+    }
+
+    @Test
+    public void printfPlaceholders() {
+        assertEquals("lock key failed", MessageTemplate.format("lock %s %s", "key", "failed"));
+    }
+
+    @Test
+    public void missingArgumentsKeepPlaceholder() {
+        assertEquals("a {} %s", MessageTemplate.format("{} {} %s", "a"));
+        assertEquals("a {1}", MessageTemplate.format("{0} {1}", "a"));
+    }
+
+    @Test
+    public void noArgumentsReturnPattern() {
+        assertEquals("x {0}", MessageTemplate.format("x {0}"));
+        assertEquals("x {0}", MessageTemplate.format("x {0}", (String[]) null));
+        assertNull(MessageTemplate.format(null, "a"));
+    }
+
+    @Test
+    public void plainPatternHasNoPlaceholder() {
+        MessageTemplate template = MessageTemplate.compile("操作成功");
+        assertFalse(template.hasPlaceholder());
+        assertEquals("操作成功", template.apply("ignored"));
+    }
+
+    @Test
+    public void compiledTemplateIsCached() {
+        assertSame(MessageTemplate.compile("cached {0}"), MessageTemplate.compile("cached {0}"));
+    }
+
+    @Test
+    public void quotesFallBackToMessageFormat() {
+        MessageTemplate template = MessageTemplate.compile("'{0}' is {1}");
+        assertTrue(template.hasPlaceholder());
+        assertEquals("{0} is b", template.apply("a", "b"));
+    }
+
+    @Test
+    public void escapedQuoteUsesMessageFormat() {
+        assertEquals("It's x", MessageTemplate.format("It''s {0}", "x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void formatTypesFallBackToMessageFormat() {
+        // MessageFormat 的语义: {0,number} 不能格式化字符串参数
+        MessageTemplate.format("{0,number}", "x");
+    }
+
+    @Test
+    public void bizCodeBind() {
+        IBizCode code = new BizCode(501, "参数 {} 错误");
+        IBizCode bound = code.bind("name");
+        assertEquals(Integer.valueOf(501), bound.getCode());
+        assertEquals("参数 name 错误", bound.getMessage());
+    }
+}
@@ -0,0 +1,61 @@
+package cn.mapway.biz.core;
+
+import cn.mapway.biz.constant.BizCode;
+import cn.mapway.biz.exception.BizException;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class AbstractBizExecutorAssertTest {
+
+    private final AbstractBizExecutor<Object, Object> executor = new AbstractBizExecutor<Object, Object>() {
+        @Override
+        protected BizResult<Object> process(BizContext context, BizRequest<Object> request) {
+            return BizResult.success(null);
+        }
+    };
+
+    private static BizException fails(Runnable check) {
+        try {
+            check.run();
+        } catch (BizException e) {
+            return e;
+        }
+        fail("没有抛出 BizException");
+        return null;
+    }
+
+    @Test
+    public void nullMessageIsNotAmbiguous() {
+        assertEquals("没有设置消息", fails(() -> executor.assertNotNull(null, null)).getMessage());
+        assertEquals("没有设置消息", fails(() -> executor.assertTrue(false, null)).getMessage());
+        assertEquals("没有设置消息", fails(() -> executor.assertNotEmpty(Collections.emptyMap(), null)).getMessage());
+    }
+
+    @Test
+    public void fixedArityFormatsTemplate() {
+        assertEquals("a-b-c", fails(() -> executor.assertNotNull(null, "{0}-{1}-{2}", "a", "b", "c")).getMessage());
+        assertEquals("用户 tom", fails(() -> executor.assertTrue(null, "用户 {}", "tom")).getMessage());
+        executor.assertNotEmpty(Collections.singletonList(1), "{0}", "unused");
+    }
+
+    @Test
+    public void lazyMessageOnlyOnFailure() {
+        executor.assertNotNullLazy("x", () -> {
+            throw new AssertionError("不应该生成消息");
+        });
+        assertEquals("lazy", fails(() -> executor.assertTrueLazy(false, () -> "lazy")).getMessage());
+        assertEquals("没有设置消息", fails(() -> executor.assertNotEmptyLazy(null, null)).getMessage());
+    }
+
+    @Test
+    public void codeVariantUsesBizCode() {
+        BizException e = fails(() -> executor.assertNotEmptyCode(Collections.emptyList(), new BizCode(601, "列表为空")));
+        assertEquals(Integer.valueOf(601), e.getCode());
+        assertEquals("列表为空", e.getMessage());
+        executor.assertTrueCode(true, new BizCode(602, "unused"));
+    }
+}
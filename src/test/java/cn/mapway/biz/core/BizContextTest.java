@@ -0,0 +1,150 @@
+package cn.mapway.biz.core;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BizContextTest {
+
+    private static final ContextKey<String> NAME = ContextKey.of("test.name", String.class);
+    private static final ContextKey<Integer> AGE = ContextKey.of("test.age", Integer.class);
+
+    @Test
+    public void typedKeyAndMapNameShareValue() {
+        BizContext context = new BizContext();
+        context.put(NAME, "tom");
+        assertEquals("tom", context.get("test.name"));
+        context.put("test.name", "jerry");
+        assertEquals("jerry", context.get(NAME));
+        assertEquals(1, context.size());
+    }
+
+    @Test
+    public void mapPutWithOtherTypeKeepsMapSemantics() {
+        BizContext context = new BizContext();
+        context.put(AGE, 3);
+        assertEquals(3, context.put("test.age", "not a number"));
+        assertEquals("not a number", context.get("test.age"));
+        assertTrue(context.containsKey("test.age"));
+        assertNull(context.get(AGE));
+        assertFalse(context.contains(AGE));
+        assertEquals(1, context.size());
+
+        context.put(AGE, 4);
+        assertEquals(4, context.get("test.age"));
+        assertEquals(1, context.size());
+
+        context.put("test.age", "again");
+        assertEquals("again", context.remove("test.age"));
+        assertTrue(context.isEmpty());
+    }
+
+    @Test
+    public void copyKeepsMismatchedValue() {
+        BizContext context = new BizContext();
+        context.put("test.age", "text");
+        BizContext copy = new BizContext();
+        copy.put(AGE, 1);
+        copy.putAll(context);
+        assertEquals("text", copy.get("test.age"));
+        assertEquals(1, copy.size());
+        assertEquals(context, context.copy());
+    }
+
+    @Test
+    public void nullValueIsPresent() {
+        BizContext context = new BizContext();
+        context.put(NAME, null);
+        assertTrue(context.contains(NAME));
+        assertTrue(context.containsKey("test.name"));
+        assertNull(context.get(NAME));
+        assertEquals(Integer.valueOf(7), context.getOrDefault(AGE, 7));
+        assertNull(context.getOrDefault(NAME, "unused"));
+        assertEquals(1, context.size());
+    }
+
+    @Test
+    public void removeAndClear() {
+        BizContext context = new BizContext();
+        context.put(NAME, "tom");
+        context.put("free", 1);
+        assertEquals("tom", context.remove("test.name"));
+        assertFalse(context.contains(NAME));
+        assertEquals(1, context.size());
+        context.clear();
+        assertTrue(context.isEmpty());
+    }
+
+    @Test
+    public void equalsHashMapWithSameEntries() {
+        BizContext context = new BizContext();
+        context.put(NAME, "tom");
+        context.put(AGE, 3);
+        context.put("free", "v");
+        Map<String, Object> expected = new HashMap<>();
+        expected.put("test.name", "tom");
+        expected.put("test.age", 3);
+        expected.put("free", "v");
+        assertEquals(expected, context);
+        assertEquals(expected.hashCode(), context.hashCode());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        BizContext context = new BizContext();
+        context.put(NAME, "tom");
+        context.put("free", "v");
+        Iterator<Map.Entry<String, Object>> iterator = context.entrySet().iterator();
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+        assertTrue(context.isEmpty());
+    }
+
+    @Test
+    public void valuePutBeforeKeyRegistrationIsMigrated() {
+        BizContext context = new BizContext();
+        context.put("test.late", "early");
+        ContextKey<String> late = ContextKey.of("test.late", String.class);
+        assertEquals("early", context.get(late));
+        assertEquals(1, context.size());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        BizContext context = new BizContext();
+        context.put(NAME, "tom");
+        BizContext copy = context.copy();
+        copy.put(NAME, "jerry");
+        assertEquals("tom", context.get(NAME));
+        assertEquals("jerry", copy.get(NAME));
+    }
+
+    @Test
+    public void serializationRoundTrip() throws Exception {
+        BizContext context = new BizContext();
+        context.put(NAME, "tom");
+        context.put("free", "v");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(context);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            BizContext read = (BizContext) in.readObject();
+            assertEquals(context, read);
+            assertEquals("tom", read.get(NAME));
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package cn.mapway.biz.core;
+
+import cn.mapway.biz.exception.BizException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeFalse;
+import static org.junit.Assume.assumeTrue;
+
+public class BizExecutorsTest {
+
+    /**
+     * 返回执行线程的名字, 参数为 fail 时抛出业务异常
+     */
+    static class ThreadNameExecutor extends AbstractBizExecutor<String, String> {
+        @Override
+        protected BizResult<String> process(BizContext context, BizRequest<String> request) {
+            if ("fail".equals(request.getData())) {
+                throw BizException.get(404, "没有找到");
+            }
+            return BizResult.success(Thread.currentThread().getName());
+        }
+    }
+
+    private ExecutorService previous;
+
+    @Before
+    public void setUp() {
+        previous = BizExecutors.getDefaultExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        BizExecutors.setDefaultExecutor(previous);
+        System.clearProperty(BizExecutors.PROPERTY_THREADS);
+    }
+
+    @Test
+    public void executeAsyncRunsOnDefaultExecutor() throws Exception {
+        ExecutorService single = BizExecutors.newFixedExecutor(1);
+        try {
+            assertSame(previous, BizExecutors.setDefaultExecutor(single));
+            BizResult<String> result = new ThreadNameExecutor()
+                    .executeAsync(new BizContext(), BizRequest.wrap("name", "a"))
+                    .get(5, TimeUnit.SECONDS);
+            assertTrue(result.isSuccess());
+            assertEquals("biz-executor-1", result.getData());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void executeAsyncMapsBizExceptionToResult() throws Exception {
+        BizResult<String> result = new ThreadNameExecutor()
+                .executeAsync(new BizContext(), BizRequest.wrap("name", "fail"), Runnable::run)
+                .get(5, TimeUnit.SECONDS);
+        assertFalse(result.isSuccess());
+        assertEquals(404, result.getCode().intValue());
+    }
+
+    @Test
+    public void poolSizeFromProperty() {
+        System.setProperty(BizExecutors.PROPERTY_THREADS, "3");
+        ExecutorService executor = BizExecutors.createDefaultExecutor();
+        try {
+            assertEquals(3, ((ThreadPoolExecutor) executor).getCorePoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.setProperty(BizExecutors.PROPERTY_THREADS, "0");
+        executor = BizExecutors.createDefaultExecutor();
+        try {
+            assertEquals(1, ((ThreadPoolExecutor) executor).getCorePoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void defaultPoolSizeFollowsProcessors() {
+        ExecutorService executor = BizExecutors.createDefaultExecutor();
+        try {
+            assertEquals(Runtime.getRuntime().availableProcessors() * 4,
+                    ((ThreadPoolExecutor) executor).getCorePoolSize());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void virtualThreadsUnsupportedKeepsDefault() {
+        assumeFalse(BizExecutors.isVirtualThreadSupported());
+        assertFalse(BizExecutors.useVirtualThreads());
+        assertSame(previous, BizExecutors.getDefaultExecutor());
+        assertFalse(previous.isShutdown());
+    }
+
+    @Test
+    public void virtualThreadsShutDownOwnedExecutorOnly() {
+        assumeTrue(BizExecutors.isVirtualThreadSupported());
+        ExecutorService custom = BizExecutors.newFixedExecutor(1);
+        try {
+            BizExecutors.setDefaultExecutor(custom);
+            assertTrue(BizExecutors.useVirtualThreads());
+            assertFalse(custom.isShutdown());
+
+            ExecutorService first = BizExecutors.getDefaultExecutor();
+            assertNotSame(custom, first);
+            assertTrue(BizExecutors.useVirtualThreads());
+            assertTrue(first.isShutdown());
+            BizExecutors.getDefaultExecutor().shutdown();
+        } finally {
+            custom.shutdownNow();
+        }
+    }
+}
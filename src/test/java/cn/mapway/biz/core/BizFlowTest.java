@@ -0,0 +1,98 @@
+package cn.mapway.biz.core;
+
+import org.junit.Test;
+
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+public class BizFlowTest {
+
+    private static AbstractBizExecutor<Object, String> node(BiConsumer<BizContext, String> body) {
+        return new AbstractBizExecutor<Object, String>() {
+            @Override
+            protected BizResult<Object> process(BizContext context, BizRequest<String> request) {
+                body.accept(context, request.getData());
+                return BizResult.success(null);
+            }
+        };
+    }
+
+    @Test
+    public void parallelMergeKeepsEveryNodesChanges() {
+        BizContext context = new BizContext();
+        context.put("shared", "old");
+        context.put("removed", "x");
+        BizFlow<String> flow = BizFlow.<String>create().parallel(
+                node((c, p) -> {
+                    c.put("shared", "first");
+                    c.remove("removed");
+                }),
+                node((c, p) -> c.put("other", "second")));
+
+        BizResult<Object> result = flow.execute(context, BizRequest.wrap("t", "p"));
+
+        assertTrue(result.isSuccess());
+        assertEquals("first", context.get("shared"));
+        assertEquals("second", context.get("other"));
+        assertFalse(context.containsKey("removed"));
+    }
+
+    @Test
+    public void laterNodeWinsOnConflict() {
+        BizContext context = new BizContext();
+        BizFlow<String> flow = BizFlow.<String>create().parallel(
+                node((c, p) -> c.put("k", "a")),
+                node((c, p) -> c.put("k", "b")));
+        flow.execute(context, BizRequest.wrap("t", "p"));
+        assertEquals("b", context.get("k"));
+    }
+
+    @Test
+    public void nullResultIsFailure() {
+        AbstractBizExecutor<Object, String> empty = new AbstractBizExecutor<Object, String>() {
+            @Override
+            protected BizResult<Object> process(BizContext context, BizRequest<String> request) {
+                return null;
+            }
+        };
+        BizResult<Object> sequential = BizFlow.<String>create().then(empty)
+                .execute(new BizContext(), BizRequest.wrap("t", "p"));
+        assertEquals(Integer.valueOf(500), sequential.getCode());
+
+        BizResult<Object> parallel = BizFlow.<String>create().parallel(empty, node((c, p) -> {
+                }))
+                .execute(new BizContext(), BizRequest.wrap("t", "p"));
+        assertEquals(1, parallel.getErrorList().size());
+    }
+
+    @Test
+    public void errorsAreNotAddedToNodeResult() {
+        AbstractBizExecutor<Object, String> failing = new AbstractBizExecutor<Object, String>() {
+            @Override
+            protected BizResult<Object> process(BizContext context, BizRequest<String> request) {
+                return BizResult.error(501, "失败");
+            }
+        };
+        BizResult<Object> shared = BizResult.success("shared");
+        AbstractBizExecutor<Object, String> sharing = new AbstractBizExecutor<Object, String>() {
+            @Override
+            protected BizResult<Object> process(BizContext context, BizRequest<String> request) {
+                return shared;
+            }
+        };
+        BizFlow<String> flow = BizFlow.<String>create().then(failing).then(sharing);
+
+        BizResult<Object> first = flow.execute(new BizContext(), BizRequest.wrap("t", "p"));
+        BizResult<Object> second = flow.execute(new BizContext(), BizRequest.wrap("t", "p"));
+
+        assertEquals(1, first.getErrorList().size());
+        assertEquals(1, second.getErrorList().size());
+        assertEquals("shared", second.getData());
+        assertNotSame(shared, second);
+        assertTrue(shared.getErrorList().isEmpty());
+    }
+}
@@ -0,0 +1,126 @@
+package cn.mapway.biz.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BizScopeTest {
+
+    /**
+     * 把参数写入上下文, 返回执行时使用的上下文中的值
+     */
+    static class PutExecutor extends AbstractBizExecutor<Object, String> {
+        @Override
+        protected BizResult<Object> process(BizContext context, BizRequest<String> request) {
+            context.put("data", request.getData());
+            return BizResult.success(context);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        BizScope.closeAll();
+    }
+
+    @Test
+    public void closedContextIsClearedAndReused() {
+        BizContext first;
+        try (BizScope scope = BizScope.open()) {
+            first = scope.context();
+            first.put("a", 1);
+        }
+        assertTrue(first.isEmpty());
+        long reused = BizScope.getReusedCount();
+        try (BizScope scope = BizScope.open()) {
+            assertSame(first, scope.context());
+        }
+        assertEquals(reused + 1, BizScope.getReusedCount());
+    }
+
+    @Test
+    public void closedScopeRejectsContext() {
+        BizScope scope = BizScope.open();
+        scope.close();
+        try {
+            scope.context();
+            fail();
+        } catch (IllegalStateException expected) {
+            // 上下文已经归还
+        }
+    }
+
+    @Test
+    public void nestedScopesRestoreOuter() {
+        assertNull(BizScope.current());
+        try (BizScope outer = BizScope.open()) {
+            assertSame(outer, BizScope.current());
+            try (BizScope inner = BizScope.open()) {
+                assertSame(inner, BizScope.current());
+            }
+            assertSame(outer, BizScope.current());
+        }
+        assertNull(BizScope.current());
+    }
+
+    @Test
+    public void executeUsesCurrentScopeContext() {
+        PutExecutor executor = new PutExecutor();
+        try (BizScope outer = BizScope.open()) {
+            try (BizScope inner = BizScope.open()) {
+                assertSame(inner.context(), executor.execute(BizRequest.wrap("put", "x")).getData());
+                assertEquals("x", inner.context().get("data"));
+            }
+            assertSame(outer.context(), executor.execute(BizRequest.wrap("put", "y")).getData());
+            assertEquals("y", outer.context().get("data"));
+        }
+    }
+
+    @Test
+    public void closingOuterReleasesUnclosedInner() {
+        long leaked = BizScope.getLeakedCount();
+        BizScope outer = BizScope.open();
+        BizScope inner = BizScope.open();
+        outer.close();
+        assertEquals(leaked + 1, BizScope.getLeakedCount());
+        assertNull(BizScope.current());
+        inner.close();
+        assertEquals(leaked + 1, BizScope.getLeakedCount());
+    }
+
+    @Test
+    public void closeAllCountsOpenScopes() {
+        long leaked = BizScope.getLeakedCount();
+        BizScope.open();
+        BizScope.open();
+        assertEquals(2, BizScope.closeAll());
+        assertEquals(leaked + 2, BizScope.getLeakedCount());
+        assertNull(BizScope.current());
+    }
+
+    @Test
+    public void scopeNeverClosedIsCountedAsLeak() throws InterruptedException {
+        long leaked = BizScope.getLeakedCount();
+        long unreleased = BizScope.getUnreleasedCount();
+        try (BizScope outer = BizScope.open()) {
+            openAndForget();
+            for (int i = 0; i < 50 && BizScope.getLeakedCount() == leaked; i++) {
+                System.gc();
+                Thread.sleep(20);
+            }
+            assertEquals(leaked + 1, BizScope.getLeakedCount());
+            assertSame(outer, BizScope.current());
+            assertEquals(unreleased + 1, BizScope.getUnreleasedCount());
+        }
+        assertNull(BizScope.current());
+        assertEquals(unreleased, BizScope.getUnreleasedCount());
+    }
+
+    private static void openAndForget() {
+        BizScope.open().context().put("a", 1);
+    }
+}
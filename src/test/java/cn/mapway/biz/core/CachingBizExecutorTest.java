@@ -0,0 +1,172 @@
+package cn.mapway.biz.core;
+
+import cn.mapway.biz.constant.BizCode;
+import cn.mapway.biz.metrics.BizMetrics;
+import cn.mapway.biz.metrics.BizMetricsSink;
+import cn.mapway.biz.metrics.InMemoryBizMetricsSink;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CachingBizExecutorTest {
+
+    private static final BizCode NOT_FOUND = new BizCode(404, "没有找到");
+
+    /**
+     * 记录调用次数, 按 answer 返回结果
+     */
+    static class CountingExecutor extends AbstractBizExecutor<String, String> {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile Function<String, BizResult<String>> answer = data -> BizResult.success("v-" + data);
+
+        @Override
+        protected BizResult<String> process(BizContext context, BizRequest<String> request) {
+            calls.incrementAndGet();
+            return answer.apply(request.getData());
+        }
+    }
+
+    private static BizResult<String> call(CachingBizExecutor<String, String> executor, String data) {
+        return executor.execute(new BizContext(), BizRequest.wrap("query", data));
+    }
+
+    @Test
+    public void hitReturnsSharedResult() {
+        CountingExecutor delegate = new CountingExecutor();
+        CachingBizExecutor<String, String> executor = new CachingBizExecutor<>(delegate, 1, TimeUnit.MINUTES, 100);
+        BizResult<String> first = call(executor, "a");
+        assertSame(first, call(executor, "a"));
+        assertEquals("v-b", call(executor, "b").getData());
+        assertEquals(2, delegate.calls.get());
+        assertEquals(1, executor.getHitCount());
+    }
+
+    @Test
+    public void concurrentMissesLoadOnce() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountingExecutor delegate = new CountingExecutor();
+        delegate.answer = data -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return BizResult.success("slow");
+        };
+        CachingBizExecutor<String, String> executor = new CachingBizExecutor<>(delegate, 1, TimeUnit.MINUTES, 100);
+        CompletableFuture<BizResult<String>> loader = CompletableFuture.supplyAsync(() -> call(executor, "k"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<BizResult<String>> waiter = CompletableFuture.supplyAsync(() -> call(executor, "k"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getWaitCount() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        assertSame(loader.get(5, TimeUnit.SECONDS), waiter.get(5, TimeUnit.SECONDS));
+        assertEquals(1, delegate.calls.get());
+        assertEquals(1, executor.getWaitCount());
+    }
+
+    @Test
+    public void expiredResultIsReloaded() throws Exception {
+        CountingExecutor delegate = new CountingExecutor();
+        CachingBizExecutor<String, String> executor = new CachingBizExecutor<>(delegate, 20, TimeUnit.MILLISECONDS, 100);
+        call(executor, "a");
+        call(executor, "a");
+        assertEquals(1, delegate.calls.get());
+        Thread.sleep(40);
+        call(executor, "a");
+        assertEquals(2, delegate.calls.get());
+    }
+
+    @Test
+    public void onlyConfiguredErrorsAreCached() throws Exception {
+        CountingExecutor delegate = new CountingExecutor();
+        delegate.answer = data -> "missing".equals(data) ? BizResult.error(NOT_FOUND) : BizResult.error(500, "失败");
+        CachingBizExecutor<String, String> executor = new CachingBizExecutor<>(delegate, 1, TimeUnit.MINUTES, 100)
+                .cacheErrors(20, TimeUnit.MILLISECONDS, NOT_FOUND);
+
+        assertEquals(Integer.valueOf(404), call(executor, "missing").getCode());
+        call(executor, "missing");
+        assertEquals(1, delegate.calls.get());
+        Thread.sleep(40);
+        call(executor, "missing");
+        assertEquals(2, delegate.calls.get());
+
+        call(executor, "broken");
+        call(executor, "broken");
+        assertEquals(4, delegate.calls.get());
+    }
+
+    @Test
+    public void mutableParameterNeedsKeyBy() {
+        AbstractBizExecutor<String, BizParam> delegate = new AbstractBizExecutor<String, BizParam>() {
+            @Override
+            protected BizResult<String> process(BizContext context, BizRequest<BizParam> request) {
+                return BizResult.success("ok");
+            }
+        };
+        CachingBizExecutor<String, BizParam> executor = new CachingBizExecutor<>(delegate, 1, TimeUnit.MINUTES, 100);
+        BizResult<String> rejected = executor.execute(new BizContext(), BizRequest.wrap("query", new BizParam()));
+        assertEquals(Integer.valueOf(500), rejected.getCode());
+        assertEquals(0, executor.size());
+
+        executor.keyBy(param -> "fixed");
+        assertTrue(executor.execute(new BizContext(), BizRequest.wrap("query", new BizParam())).isSuccess());
+        assertEquals(1, executor.size());
+    }
+
+    @Test
+    public void metricsUseDelegateType() {
+        BizMetricsSink old = BizMetrics.getSink();
+        InMemoryBizMetricsSink sink = new InMemoryBizMetricsSink();
+        BizMetrics.setSink(sink);
+        try {
+            CachingBizExecutor<String, String> executor =
+                    new CachingBizExecutor<>(new CountingExecutor(), 1, TimeUnit.MINUTES, 100);
+            call(executor, "a");
+            assertNotNull(sink.snapshot(CountingExecutor.class, "query"));
+            assertNull(sink.snapshot(CachingBizExecutor.class, "query"));
+        } finally {
+            BizMetrics.setSink(old);
+        }
+    }
+
+    @Test
+    public void cachedResultInsideFlowIsNotModified() {
+        AbstractBizExecutor<Object, String> failing = new AbstractBizExecutor<Object, String>() {
+            @Override
+            protected BizResult<Object> process(BizContext context, BizRequest<String> request) {
+                return BizResult.error(501, "失败");
+            }
+        };
+        CountingExecutor delegate = new CountingExecutor();
+        delegate.answer = data -> BizResult.error(NOT_FOUND);
+        CachingBizExecutor<String, String> cached = new CachingBizExecutor<>(delegate, 1, TimeUnit.MINUTES, 10)
+                .cacheErrors(1, TimeUnit.MINUTES, NOT_FOUND);
+        BizFlow<String> flow = BizFlow.<String>create().then(failing).then(cached);
+
+        for (int i = 0; i < 3; i++) {
+            BizResult<Object> result = flow.execute(new BizContext(), BizRequest.wrap("query", "a"));
+            assertEquals(Integer.valueOf(404), result.getCode());
+            assertEquals(1, result.getErrorList().size());
+        }
+        assertEquals(1, delegate.calls.get());
+        BizResult<String> shared = call(cached, "a");
+        assertTrue(shared.getErrorList().isEmpty());
+        assertNotSame(shared, flow.execute(new BizContext(), BizRequest.wrap("query", "a")));
+    }
+}
@@ -0,0 +1,80 @@
+package cn.mapway.biz.core;
+
+import cn.mapway.biz.exception.BizException;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class CursorTokenTest {
+
+    private static String token(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void integralKeysDecodeAsLong() {
+        assertEquals(123L, CursorToken.decode(CursorToken.encode(123)));
+        assertEquals(Long.MIN_VALUE, CursorToken.decode(CursorToken.encode(Long.MIN_VALUE)));
+    }
+
+    @Test
+    public void decimalKeysDecodeAsBigDecimal() {
+        assertEquals(new BigDecimal("1.5"), CursorToken.decode(CursorToken.encode(1.5d)));
+        assertEquals(new BigDecimal("12345678901234567890.01"),
+                CursorToken.decode(CursorToken.encode(new BigDecimal("12345678901234567890.01"))));
+    }
+
+    @Test
+    public void dateAndStringKeys() {
+        Date date = new Date(1700000000123L);
+        assertEquals(date, CursorToken.decode(CursorToken.encode(date)));
+        assertEquals("名字/a+b=c", CursorToken.decode(CursorToken.encode("名字/a+b=c")));
+        assertEquals("", CursorToken.decode(CursorToken.encode("")));
+    }
+
+    @Test
+    public void tokenIsUrlSafe() {
+        String token = CursorToken.encode("??>>~~");
+        assertFalse(token.contains("+") || token.contains("/") || token.contains("="));
+    }
+
+    @Test
+    public void nullAndEmpty() {
+        assertNull(CursorToken.encode(null));
+        assertNull(CursorToken.decode(null));
+        assertNull(CursorToken.decode(""));
+    }
+
+    @Test(expected = BizException.class)
+    public void invalidBase64() {
+        CursorToken.decode("###");
+    }
+
+    @Test(expected = BizException.class)
+    public void unknownType() {
+        CursorToken.decode(token("Xabc"));
+    }
+
+    @Test(expected = BizException.class)
+    public void malformedNumber() {
+        CursorToken.decode(token("Labc"));
+    }
+
+    @Test
+    public void malformedCursorIsParameterError() {
+        try {
+            CursorToken.decode("###");
+            fail();
+        } catch (BizException e) {
+            assertEquals(400, e.getCode().intValue());
+        }
+    }
+}
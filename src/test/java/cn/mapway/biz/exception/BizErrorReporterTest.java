@@ -0,0 +1,178 @@
+package cn.mapway.biz.exception;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BizErrorReporterTest {
+
+    private final List<BizErrorEvent> events = new CopyOnWriteArrayList<>();
+    private final List<BizErrorReporter> reporters = new ArrayList<>();
+
+    @After
+    public void tearDown() {
+        for (BizErrorReporter reporter : reporters) {
+            reporter.close();
+        }
+    }
+
+    private BizErrorReporter create(int permitsPerSecond, long windowMillis, int capacity) {
+        BizErrorReporter reporter = new BizErrorReporter(events::add, permitsPerSecond, windowMillis, capacity);
+        reporters.add(reporter);
+        return reporter;
+    }
+
+    private static IllegalStateException sameStack() {
+        return new IllegalStateException("same");
+    }
+
+    private static IllegalStateException otherStack() {
+        return new IllegalStateException("other");
+    }
+
+    private void await(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (events.size() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("等待超时, 收到 " + events);
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void firstOccurrenceIsReportedImmediately() throws InterruptedException {
+        BizErrorReporter reporter = create(100, 60_000, 100);
+        IllegalStateException error = sameStack();
+        reporter.report(String.class, "query", error);
+        await(1);
+        BizErrorEvent event = events.get(0);
+        assertTrue(event.isFirst());
+        assertSame(error, event.getError());
+        assertEquals(String.class.getName(), event.getExecutor());
+        assertEquals("query", event.getBizType());
+        assertEquals(1, event.getCount());
+    }
+
+    @Test
+    public void sameStackIsDeduplicatedUntilFlush() throws InterruptedException {
+        BizErrorReporter reporter = create(100, 60_000, 100);
+        for (int i = 0; i < 5; i++) {
+            reporter.report(String.class, "query", sameStack());
+        }
+        reporter.flush();
+        assertEquals(2, events.size());
+        BizErrorEvent summary = events.get(1);
+        assertFalse(summary.isFirst());
+        assertEquals(4, summary.getCount());
+        assertEquals(5, summary.getTotal());
+        assertEquals(4, reporter.getDeduplicatedCount());
+        assertEquals(2, reporter.getReportedCount());
+    }
+
+    @Test
+    public void differentStacksHaveDifferentFingerprints() throws InterruptedException {
+        assertNotEquals(BizErrorReporter.fingerprint(sameStack()), BizErrorReporter.fingerprint(otherStack()));
+        assertNotEquals(BizErrorReporter.fingerprint(sameStack()),
+                BizErrorReporter.fingerprint(new IllegalStateException("wrapped", new RuntimeException())));
+
+        BizErrorReporter reporter = create(100, 60_000, 100);
+        reporter.report(String.class, null, sameStack());
+        reporter.report(String.class, null, otherStack());
+        await(2);
+        assertTrue(events.get(0).isFirst());
+        assertTrue(events.get(1).isFirst());
+    }
+
+    @Test
+    public void summaryIsReportedAtWindowEnd() throws InterruptedException {
+        BizErrorReporter reporter = create(100, 30, 100);
+        for (int i = 0; i < 3; i++) {
+            reporter.report(String.class, null, sameStack());
+        }
+        // 窗口可能在两次报告之间结束, 累计所有汇总事件
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        long summarized = 0;
+        while (summarized < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+            summarized = 0;
+            for (BizErrorEvent event : events) {
+                summarized += event.isFirst() ? 0 : event.getCount();
+            }
+        }
+        assertEquals(2, summarized);
+        assertEquals(3, events.get(events.size() - 1).getTotal());
+    }
+
+    @Test
+    public void rateLimitIsPerExceptionType() {
+        BizErrorReporter reporter = create(1, 60_000, 1000);
+        for (int i = 0; i < 50; i++) {
+            reporter.report(String.class, null, sameStack());
+        }
+        // 一秒的突发量: 立即放行两个, 其余限流
+        assertEquals(48, reporter.getRateLimitedCount());
+        reporter.report(String.class, null, new IllegalArgumentException());
+        assertEquals(48, reporter.getRateLimitedCount());
+        assertEquals(51, reporter.getReceivedCount());
+    }
+
+    @Test
+    public void queueDepthIsZeroAfterClosingWithBacklog() {
+        BizErrorReporter reporter = create(100_000, 60_000, 10_000);
+        for (int i = 0; i < 5000; i++) {
+            reporter.report(String.class, null, new RuntimeException());
+        }
+        reporter.close();
+        assertEquals(0, reporter.getQueueDepth());
+        assertEquals(5000, reporter.getDeduplicatedCount() + reporter.getDroppedCount()
+                + reporter.getRateLimitedCount() + 1);
+    }
+
+    @Test
+    public void closeReportsPendingAndDropsLater() throws InterruptedException {
+        BizErrorReporter reporter = create(100, 60_000, 100);
+        for (int i = 0; i < 3; i++) {
+            reporter.report(String.class, null, sameStack());
+        }
+        reporter.close();
+        assertEquals(2, events.size());
+        assertEquals(2, events.get(1).getCount());
+        assertEquals(0, reporter.getQueueDepth());
+
+        reporter.report(String.class, null, sameStack());
+        assertEquals(1, reporter.getDroppedCount());
+        assertEquals(0, reporter.getQueueDepth());
+        reporter.flush();
+    }
+
+    @Test
+    public void setDefaultClosesPrevious() {
+        BizErrorReporter first = create(100, 60_000, 100);
+        BizErrorReporter second = create(100, 60_000, 100);
+        try {
+            BizErrorReporter.setDefault(first);
+            assertSame(first, BizErrorReporter.getDefault());
+            BizErrorReporter.setDefault(second);
+            assertSame(second, BizErrorReporter.getDefault());
+
+            first.report(String.class, null, sameStack());
+            assertEquals(1, first.getDroppedCount());
+            second.report(String.class, null, sameStack());
+            assertEquals(0, second.getDroppedCount());
+        } finally {
+            BizErrorReporter.setDefault(null);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package cn.mapway.biz.exception;
+
+import cn.mapway.biz.api.SystemCodeEnum;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class BizExceptionTest {
+
+    @Test
+    public void registeredCodeWithoutArgumentsIsShared() {
+        assertSame(BizException.get(SystemCodeEnum.FAIL), BizException.get(SystemCodeEnum.FAIL));
+        assertNotSame(BizException.get(SystemCodeEnum.FAIL), BizException.get(SystemCodeEnum.FAIL, "x"));
+    }
+
+    @Test
+    public void sharedInstanceDoesNotCollectSuppressed() {
+        BizException shared = BizException.get(SystemCodeEnum.FAIL);
+        shared.addSuppressed(new IllegalStateException("close failed"));
+        assertEquals(0, shared.getSuppressed().length);
+    }
+
+    @Test
+    public void codeAndMessage() {
+        BizException exception = BizException.get(404, "not found");
+        assertEquals(Integer.valueOf(404), exception.getCode());
+        assertEquals("not found", exception.getResponse().getMessage());
+    }
+}
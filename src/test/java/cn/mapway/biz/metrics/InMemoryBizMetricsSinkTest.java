@@ -0,0 +1,44 @@
+package cn.mapway.biz.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class InMemoryBizMetricsSinkTest {
+
+    @Test
+    public void countsByOutcome() {
+        InMemoryBizMetricsSink sink = new InMemoryBizMetricsSink();
+        sink.record(String.class, "query", 1000, 200, null);
+        sink.record(String.class, "query", 1000, 404, null);
+        sink.record(String.class, "query", 1000, null, new IllegalStateException());
+        BizMetricsSnapshot snapshot = sink.snapshot(String.class, "query");
+        assertEquals(3, snapshot.getCalls());
+        assertEquals(1, snapshot.getSuccesses());
+        assertEquals(1, snapshot.getBizErrors());
+        assertEquals(1, snapshot.getUnexpectedErrors());
+        assertEquals(Long.valueOf(1), snapshot.getErrorCodes().get(404));
+    }
+
+    @Test
+    public void bizTypesOverLimitAreFolded() {
+        InMemoryBizMetricsSink sink = new InMemoryBizMetricsSink(2);
+        for (int i = 0; i < 10; i++) {
+            sink.record(String.class, "type" + i, 1000, 200, null);
+        }
+        sink.record(String.class, "type0", 1000, 200, null);
+        assertEquals(3, sink.snapshot().size());
+        assertEquals(2, sink.snapshot(String.class, "type0").getCalls());
+        assertEquals(8, sink.snapshot(String.class, InMemoryBizMetricsSink.OTHER).getCalls());
+        assertNull(sink.snapshot(String.class, "type5"));
+    }
+
+    @Test
+    public void limitIsPerExecutor() {
+        InMemoryBizMetricsSink sink = new InMemoryBizMetricsSink(1);
+        sink.record(String.class, "a", 1000, 200, null);
+        sink.record(Integer.class, "b", 1000, 200, null);
+        assertEquals(1, sink.snapshot(Integer.class, "b").getCalls());
+    }
+}
@@ -0,0 +1,85 @@
+package cn.mapway.biz.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    private static void recordMicros(LatencyHistogram histogram, long micros) {
+        histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMicros());
+        assertArrayEquals(new long[]{0, 0}, histogram.percentilesMicros(50, 99));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            recordMicros(histogram, i);
+        }
+        assertArrayEquals(new long[]{5, 9, 10}, histogram.percentilesMicros(50, 90, 100));
+        assertEquals(5, histogram.getMeanMicros());
+        assertEquals(10, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void percentilesWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            recordMicros(histogram, i);
+        }
+        long[] result = histogram.percentilesMicros(50, 90, 99, 99.9);
+        long[] expected = {5000, 9000, 9900, 9990};
+        for (int i = 0; i < expected.length; i++) {
+            assertTrue(result[i] + " < " + expected[i], result[i] >= expected[i]);
+            assertTrue(result[i] + " > " + expected[i], result[i] <= expected[i] + expected[i] / 16);
+        }
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        recordMicros(histogram, 1000);
+        assertArrayEquals(new long[]{1000}, histogram.percentilesMicros(99));
+    }
+
+    @Test
+    public void hugeValueGoesToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        recordMicros(histogram, Long.MAX_VALUE / 1000);
+        assertEquals(1, histogram.getCount());
+        assertTrue(histogram.percentilesMicros(50)[0] > 0);
+    }
+
+    @Test
+    public void upperBoundContainsIndexedValue() {
+        for (long value = 0; value < 1_000_000; value = value * 3 / 2 + 1) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(LatencyHistogram.upperBound(index) >= value);
+            assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+        }
+    }
+
+    @Test
+    public void resetClearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        recordMicros(histogram, 100);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxMicros());
+        assertArrayEquals(new long[]{0}, histogram.percentilesMicros(50));
+        recordMicros(histogram, 7);
+        assertArrayEquals(new long[]{7}, histogram.percentilesMicros(50));
+    }
+}
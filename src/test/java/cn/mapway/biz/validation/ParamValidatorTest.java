@@ -0,0 +1,141 @@
+package cn.mapway.biz.validation;
+
+import cn.mapway.biz.exception.BizException;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParamValidatorTest {
+
+    static class Param {
+        @NotNull
+        String name = "tom";
+
+        @Length(min = 2, max = 4)
+        String code = "ab";
+
+        @Length(max = 2, message = "{0} 最多 {2} 项", code = 601)
+        List<String> tags;
+
+        @Range(min = 1, max = 120)
+        Integer age = 18;
+
+        @Range(min = 0.5, max = 1.5)
+        double ratio = 1;
+
+        @Pattern(regexp = "\\d+")
+        String phone;
+
+        @Pattern(regexp = "[a-z]+", message = "{0} 不匹配 {1}", code = 602)
+        String slug;
+    }
+
+    static class ChildParam extends Param {
+        @NotNull(message = "请填写 {0}", code = 603)
+        String extra = "x";
+    }
+
+    static class PlainParam {
+        String anything;
+    }
+
+    private static BizException fails(Object parameter) {
+        try {
+            ParamValidator.check(parameter);
+        } catch (BizException e) {
+            return e;
+        }
+        fail("没有抛出 BizException");
+        return null;
+    }
+
+    private static void assertFailure(Object parameter, int code, String message) {
+        BizException e = fails(parameter);
+        assertEquals(Integer.valueOf(code), e.getCode());
+        assertEquals(message, e.getMessage());
+    }
+
+    @Test
+    public void validParameterPasses() {
+        ParamValidator.check(new Param());
+        ParamValidator.check(null);
+        assertTrue(ParamValidator.of(Param.class).hasRules());
+        assertFalse(ParamValidator.of(PlainParam.class).hasRules());
+    }
+
+    @Test
+    public void notNull() {
+        Param param = new Param();
+        param.name = null;
+        assertFailure(param, 500, "name不能为空");
+    }
+
+    @Test
+    public void lengthOfString() {
+        Param param = new Param();
+        param.code = "a";
+        assertFailure(param, 500, "code的长度必须在2到4之间");
+        param.code = "abcde";
+        assertFailure(param, 500, "code的长度必须在2到4之间");
+        param.code = "abcd";
+        ParamValidator.check(param);
+    }
+
+    @Test
+    public void lengthOfCollectionWithCustomMessage() {
+        Param param = new Param();
+        param.tags = Arrays.asList("a", "b", "c");
+        assertFailure(param, 601, "tags 最多 2 项");
+        param.tags = Arrays.asList("a", "b");
+        ParamValidator.check(param);
+    }
+
+    @Test
+    public void range() {
+        Param param = new Param();
+        param.age = 0;
+        assertFailure(param, 500, "age必须在1到120之间");
+        param.age = 121;
+        assertFailure(param, 500, "age必须在1到120之间");
+        param.age = null;
+        ParamValidator.check(param);
+    }
+
+    @Test
+    public void rangeOfPrimitiveWithFraction() {
+        Param param = new Param();
+        param.ratio = 2;
+        assertFailure(param, 500, "ratio必须在0.5到1.5之间");
+    }
+
+    @Test
+    public void pattern() {
+        Param param = new Param();
+        param.phone = "12a";
+        assertFailure(param, 500, "phone的格式不正确");
+        param.phone = "123";
+        ParamValidator.check(param);
+    }
+
+    @Test
+    public void patternWithCustomMessage() {
+        Param param = new Param();
+        param.slug = "A1";
+        assertFailure(param, 602, "slug 不匹配 [a-z]+");
+    }
+
+    @Test
+    public void superclassRulesRunFirst() {
+        ChildParam param = new ChildParam();
+        param.extra = null;
+        assertFailure(param, 603, "请填写 extra");
+        param.name = null;
+        assertFailure(param, 500, "name不能为空");
+    }
+}
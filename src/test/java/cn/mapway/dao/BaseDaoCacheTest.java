@@ -0,0 +1,69 @@
+package cn.mapway.dao;
+
+import cn.mapway.dao.DaoTestSupport.CountingDao;
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class BaseDaoCacheTest {
+
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        CountingDao dao = DaoTestSupport.createDao(10);
+        userDao = DaoTestSupport.userDao(dao);
+        userDao.enableCache(100, 60);
+    }
+
+    @Test
+    public void fetchByIdAndNameShareEntry() {
+        User first = userDao.fetch(3);
+        assertSame(first, userDao.fetch(3));
+        assertSame(first, userDao.fetch("user3"));
+        assertEquals(2, userDao.getCache().getHitCount());
+    }
+
+    @Test
+    public void updateInvalidatesAllKeys() {
+        User cached = userDao.fetch(3);
+        User changed = User.of(3);
+        changed.setScore(100);
+        userDao.update(changed);
+
+        User reloaded = userDao.fetch("user3");
+        assertNotSame(cached, reloaded);
+        assertEquals(100, reloaded.getScore());
+    }
+
+    @Test
+    public void deleteInvalidates() {
+        userDao.fetch(4);
+        userDao.delete(4);
+        assertNull(userDao.fetch(4));
+    }
+
+    @Test
+    public void deleteAfterEvictionInvalidatesOtherKeys() {
+        userDao.enableCache(5, 60);
+        userDao.fetch("user1");
+        // 每个实体两个键, 放入第三个实体时只淘汰了 user1 的 id 键
+        userDao.fetch(2);
+        userDao.fetch(3);
+        userDao.delete(1);
+        assertNull(userDao.fetch("user1"));
+    }
+
+    @Test
+    public void missingRowIsNotCached() {
+        assertNull(userDao.fetch(99));
+        userDao.fastInsert(User.of(99));
+        assertEquals("user99", userDao.fetch(99).getName());
+    }
+}
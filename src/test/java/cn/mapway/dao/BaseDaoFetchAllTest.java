@@ -0,0 +1,100 @@
+package cn.mapway.dao;
+
+import cn.mapway.dao.DaoTestSupport.CountingDao;
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+import org.nutz.trans.Trans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BaseDaoFetchAllTest {
+
+    private CountingDao dao;
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        dao = DaoTestSupport.createDao(10);
+        userDao = DaoTestSupport.userDao(dao);
+        userDao.setFetchBatchSize(3);
+    }
+
+    private static List<Long> ids(List<User> users) {
+        List<Long> ids = new ArrayList<>();
+        for (User user : users) {
+            ids.add(user.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void keepsInputOrderAndSkipsMissing() {
+        List<User> users = userDao.fetchAll(Arrays.asList(7L, 2L, 99L, 9L, 1L));
+        assertEquals(Arrays.asList(7L, 2L, 9L, 1L), ids(users));
+    }
+
+    @Test
+    public void splitsIntoChunksOfFetchBatchSize() {
+        userDao.fetchAll(Arrays.asList(1L, 2L, 3L, 4L, 5L, 6L, 7L));
+        assertEquals(3, dao.queries.get());
+    }
+
+    @Test
+    public void duplicatesAreQueriedOnce() {
+        List<User> users = userDao.fetchAll(Arrays.asList(5L, 5L, 6L, 5L));
+        assertEquals(Arrays.asList(5L, 5L, 6L, 5L), ids(users));
+        assertEquals(1, dao.queries.get());
+    }
+
+    @Test
+    public void emptyInputDoesNotQuery() {
+        assertTrue(userDao.fetchAll(Collections.emptyList()).isEmpty());
+        assertEquals(0, dao.queries.get());
+    }
+
+    @Test
+    public void byNameMapKeepsOrder() {
+        Map<String, User> users = userDao.fetchAllByNameMap(Arrays.asList("user4", "user1", "nobody"));
+        assertEquals(Arrays.asList("user4", "user1"), new ArrayList<>(users.keySet()));
+        assertEquals(4, users.get("user4").getId());
+    }
+
+    @Test
+    public void cachedEntitiesAreNotQueriedAgain() {
+        userDao.enableCache(100, 60);
+        userDao.fetch(2);
+        userDao.fetch(3);
+        dao.queries.set(0);
+        List<User> users = userDao.fetchAll(Arrays.asList(3L, 4L, 2L));
+        assertEquals(Arrays.asList(3L, 4L, 2L), ids(users));
+        assertEquals(1, dao.queries.get());
+    }
+
+    @Test
+    public void fetchAsyncInTransactionSeesUncommittedRows() {
+        User[] found = new User[1];
+        Trans.exec(() -> {
+            dao.insert(User.of(11));
+            found[0] = userDao.fetchAsync(11).join();
+        });
+        assertEquals(11, found[0].getId());
+        assertNull(userDao.getLoader());
+    }
+
+    @Test
+    public void fetchAsyncOutsideTransactionUsesLoader() {
+        assertEquals(4, userDao.fetchAsync(4).join().getId());
+        assertNotNull(userDao.getLoader());
+    }
+}
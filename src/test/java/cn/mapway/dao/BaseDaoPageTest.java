@@ -0,0 +1,106 @@
+package cn.mapway.dao;
+
+import cn.mapway.biz.core.BizResult;
+import cn.mapway.biz.core.PageableBizParam;
+import cn.mapway.dao.DaoTestSupport.CountingDao;
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+import org.nutz.dao.Cnd;
+import org.nutz.dao.Condition;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class BaseDaoPageTest {
+
+    private CountingDao dao;
+
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        dao = DaoTestSupport.createDao(25);
+        userDao = DaoTestSupport.userDao(dao);
+    }
+
+    @Test
+    public void clientCountIsUsedAsTotal() {
+        BizResult<List<User>> page = userDao.queryPage(Cnd.orderBy().asc("id"), param(2, 10, 100));
+        assertEquals(100, page.getTotal());
+        assertEquals(10, page.getData().size());
+        assertEquals(11, page.getData().get(0).getId());
+    }
+
+    @Test
+    public void countIsQueriedByDefault() {
+        BizResult<List<User>> page = userDao.queryPage(Cnd.where("score", "<=", 12), param(2, 10, -1));
+        assertEquals(12, page.getTotal());
+        assertEquals(2, page.getData().size());
+    }
+
+    @Test
+    public void skipCountKeepsPageOffset() {
+        Condition cnd = Cnd.orderBy().asc("id");
+        for (int current = 1; current <= 2; current++) {
+            BizResult<List<User>> page = userDao.queryPage(cnd, param(current, 10, PageableBizParam.COUNT_SKIP));
+            assertEquals(10, page.getData().size());
+            assertEquals((current - 1) * 10 + 1, page.getData().get(0).getId());
+            assertEquals((current - 1) * 10 + 10, page.getData().get(9).getId());
+            assertEquals(current * 10 + 1, page.getTotal());
+        }
+    }
+
+    @Test
+    public void skipCountOnLastPageReportsRealTotal() {
+        BizResult<List<User>> page = userDao.queryPage(Cnd.orderBy().asc("id"),
+                param(3, 10, PageableBizParam.COUNT_SKIP));
+        assertEquals(5, page.getData().size());
+        assertEquals(21, page.getData().get(0).getId());
+        assertEquals(25, page.getTotal());
+
+        dao.clear(User.class, Cnd.where("id", ">", 20));
+        page = userDao.queryPage(Cnd.orderBy().asc("id"), param(2, 10, PageableBizParam.COUNT_SKIP));
+        assertEquals(10, page.getData().size());
+        assertEquals(20, page.getTotal());
+    }
+
+    @Test
+    public void cachedCountExpires() throws InterruptedException {
+        userDao.enableCountCache(1);
+        assertEquals(25, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+        dao.fastInsert(User.of(26));
+        assertEquals(25, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+        Thread.sleep(1100);
+        assertEquals(26, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+    }
+
+    @Test
+    public void cachedCountIsPerCondition() {
+        userDao.enableCountCache(60);
+        assertEquals(25, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+        assertEquals(5, userDao.queryPage(Cnd.where("score", "<=", 5), param(1, 10, -1)).getTotal());
+    }
+
+    @Test
+    public void clearDropsCachedCount() {
+        userDao.enableCountCache(60);
+        assertEquals(25, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+        userDao.clear(Cnd.where("id", ">", 20));
+        assertEquals(20, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+
+        dao.fastInsert(User.of(21));
+        userDao.invalidateCache();
+        assertEquals(21, userDao.queryPage(null, param(1, 10, -1)).getTotal());
+    }
+
+    private static PageableBizParam param(int current, int pageSize, int count) {
+        PageableBizParam param = new PageableBizParam();
+        param.setCurrent(current);
+        param.setPageSize(pageSize);
+        param.setCount(count);
+        return param;
+    }
+}
@@ -0,0 +1,64 @@
+package cn.mapway.dao;
+
+import cn.mapway.biz.core.BizResult;
+import cn.mapway.biz.core.PageableBizParam;
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+import org.nutz.dao.Cnd;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BaseDaoSeekTest {
+
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        userDao = DaoTestSupport.userDao(DaoTestSupport.createDao(25));
+    }
+
+    @Test
+    public void cursorWalksEveryRowOnce() {
+        PageableBizParam param = new PageableBizParam();
+        param.setPageSize(10);
+        List<Long> seen = new ArrayList<>();
+        int pages = 0;
+        do {
+            BizResult<List<User>> page = userDao.querySeek(null, "id", param);
+            for (User user : page.getData()) {
+                seen.add(user.getId());
+            }
+            param.setCursor(page.getCursor());
+            pages++;
+        } while (param.getCursor() != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i + 1, seen.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void lastFullPageHasNoCursor() {
+        PageableBizParam param = new PageableBizParam();
+        param.setPageSize(25);
+        BizResult<List<User>> page = userDao.querySeek(null, "id", param);
+        assertEquals(25, page.getData().size());
+        assertNull(page.getCursor());
+    }
+
+    @Test
+    public void descendingWithCondition() {
+        List<User> users = userDao.querySeek(Cnd.where("score", "<=", 10), "id", 8L, 3, true);
+        assertEquals(3, users.size());
+        assertEquals(7, users.get(0).getId());
+        assertEquals(5, users.get(2).getId());
+    }
+}
@@ -0,0 +1,65 @@
+package cn.mapway.dao;
+
+import cn.mapway.dao.DaoTestSupport.CountingDao;
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Before;
+import org.junit.Test;
+import org.nutz.dao.Cnd;
+import org.nutz.dao.Dao;
+
+import java.lang.reflect.Proxy;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class BaseDaoStreamTest {
+
+    private CountingDao dao;
+    private UserDao userDao;
+
+    @Before
+    public void setUp() {
+        dao = DaoTestSupport.createDao(20);
+        userDao = DaoTestSupport.userDao(dao);
+    }
+
+    @Test
+    public void streamsMatchingRows() {
+        try (Stream<User> users = userDao.stream(Cnd.where("score", ">", 15).asc("id"), 3)) {
+            List<Long> ids = users.map(User::getId).collect(Collectors.toList());
+            assertEquals(5, ids.size());
+            assertEquals(16L, ids.get(0).longValue());
+        }
+    }
+
+    @Test
+    public void unconsumedStreamTakesNoConnection() {
+        Stream<User> users = userDao.stream(null);
+        assertEquals(0, dao.dataSource.connections.get());
+        users.close();
+        assertEquals(0, dao.dataSource.connections.get());
+    }
+
+    @Test
+    public void connectionIsTakenOnFirstRead() {
+        try (Stream<User> users = userDao.stream(null)) {
+            Iterator<User> iterator = users.iterator();
+            assertEquals(0, dao.dataSource.connections.get());
+            iterator.next();
+            assertEquals(1, dao.dataSource.connections.get());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nonDaoSupportIsRejected() {
+        Dao proxy = (Dao) Proxy.newProxyInstance(Dao.class.getClassLoader(), new Class<?>[]{Dao.class},
+                (p, method, args) -> method.invoke(dao, args));
+        UserDao other = new UserDao();
+        other.setDao(proxy);
+        other.stream(null);
+    }
+}
@@ -0,0 +1,75 @@
+package cn.mapway.dao;
+
+import cn.mapway.biz.core.BizExecutors;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class BatchLoaderTest {
+
+    private static Map<Long, String> load(List<Long> keys) {
+        Map<Long, String> values = new HashMap<>();
+        for (Long key : keys) {
+            if (key > 0) {
+                values.put(key, "v" + key);
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void concurrentLoadsAreBatched() throws Exception {
+        List<List<Long>> calls = new ArrayList<>();
+        BatchLoader<Long, String> loader = new BatchLoader<>(keys -> {
+            synchronized (calls) {
+                calls.add(new ArrayList<>(keys));
+            }
+            return load(keys);
+        }, 50, 100);
+        CompletableFuture<String> a = loader.load(1L);
+        CompletableFuture<String> b = loader.load(2L);
+        CompletableFuture<String> again = loader.load(1L);
+        CompletableFuture<String> missing = loader.load(-1L);
+
+        assertSame(a, again);
+        assertEquals("v1", a.get(5, TimeUnit.SECONDS));
+        assertEquals("v2", b.get(5, TimeUnit.SECONDS));
+        assertNull(missing.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.size());
+        assertEquals(3, calls.get(0).size());
+    }
+
+    @Test
+    public void fullBatchIsDispatchedWithoutWaiting() throws Exception {
+        BatchLoader<Long, String> loader = new BatchLoader<>(BatchLoaderTest::load, 60000, 2);
+        CompletableFuture<String> a = loader.load(1L);
+        CompletableFuture<String> b = loader.load(2L);
+        assertEquals("v1", a.get(5, TimeUnit.SECONDS));
+        assertEquals("v2", b.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void joinFromSaturatedDefaultPoolDoesNotDeadlock() throws Exception {
+        ExecutorService previous = BizExecutors.getDefaultExecutor();
+        ExecutorService single = BizExecutors.newFixedExecutor(1);
+        BizExecutors.setDefaultExecutor(single);
+        try {
+            BatchLoader<Long, String> loader = new BatchLoader<>(BatchLoaderTest::load, 1, 100);
+            CompletableFuture<String> result = CompletableFuture.supplyAsync(() -> loader.load(7L).join(), single);
+            assertEquals("v7", result.get(5, TimeUnit.SECONDS));
+        } finally {
+            BizExecutors.setDefaultExecutor(previous);
+            single.shutdownNow();
+        }
+    }
+}
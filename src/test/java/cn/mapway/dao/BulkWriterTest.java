@@ -0,0 +1,68 @@
+package cn.mapway.dao;
+
+import org.junit.Test;
+import org.nutz.trans.Trans;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BulkWriterTest {
+
+    private static List<DaoTestSupport.User> users(int from, int to) {
+        List<DaoTestSupport.User> rows = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            rows.add(DaoTestSupport.User.of(i));
+        }
+        return rows;
+    }
+
+    @Test
+    public void backgroundInsertWritesEveryChunk() {
+        DaoTestSupport.CountingDao dao = DaoTestSupport.createDao(0);
+        BulkWriteOptions options = BulkWriteOptions.of(10);
+        options.setBackground(true);
+        List<String> threads = new ArrayList<>();
+        options.setListener(chunk -> threads.add(Thread.currentThread().getName()));
+
+        BulkWriteReport report = DaoTestSupport.userDao(dao).bulkInsert(users(1, 25), options);
+
+        assertEquals(25, dao.count(DaoTestSupport.User.class));
+        assertEquals(3, report.getChunks().size());
+        assertTrue(threads.get(0).startsWith("biz-bulk-writer-"));
+    }
+
+    @Test
+    public void backgroundInsertInTransactionIsRejected() {
+        DaoTestSupport.CountingDao dao = DaoTestSupport.createDao(0);
+        BulkWriteOptions options = BulkWriteOptions.of(10);
+        options.setBackground(true);
+        Trans.exec(() -> {
+            try {
+                DaoTestSupport.userDao(dao).bulkInsert(users(1, 5), options);
+                fail();
+            } catch (IllegalStateException expected) {
+                // 后台线程不在这个事务中
+            }
+        });
+        assertEquals(0, dao.count(DaoTestSupport.User.class));
+    }
+
+    @Test
+    public void foregroundInsertJoinsCallerTransaction() {
+        DaoTestSupport.CountingDao dao = DaoTestSupport.createDao(0);
+        try {
+            Trans.exec(() -> {
+                DaoTestSupport.userDao(dao).bulkInsert(users(1, 5), 2);
+                throw new IllegalStateException("rollback");
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // 外层事务回滚
+        }
+        assertEquals(0, dao.count(DaoTestSupport.User.class));
+    }
+}
@@ -0,0 +1,128 @@
+package cn.mapway.dao;
+
+import org.nutz.dao.Condition;
+import org.nutz.dao.Dao;
+import org.nutz.dao.entity.annotation.Column;
+import org.nutz.dao.entity.annotation.Id;
+import org.nutz.dao.entity.annotation.Name;
+import org.nutz.dao.entity.annotation.Table;
+import org.nutz.dao.impl.NutDao;
+import org.nutz.dao.impl.SimpleDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 内嵌 H2 数据库上的 BaseDao 测试数据
+ */
+final class DaoTestSupport {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private DaoTestSupport() {
+    }
+
+    /**
+     * 每次调用创建一个独立的内存数据库, 并写入 rows 条记录
+     */
+    static CountingDao createDao(int rows) {
+        CountingDataSource dataSource = new CountingDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:biz" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        dataSource.setUsername("sa");
+        dataSource.setPassword("");
+        CountingDao dao = new CountingDao(dataSource);
+        dao.create(User.class, true);
+        for (int i = 1; i <= rows; i++) {
+            dao.fastInsert(User.of(i));
+        }
+        dao.queries.set(0);
+        dataSource.connections.set(0);
+        return dao;
+    }
+
+    static UserDao userDao(Dao dao) {
+        UserDao userDao = new UserDao();
+        userDao.setDao(dao);
+        return userDao;
+    }
+
+    /**
+     * 记录打开的连接数量
+     */
+    static class CountingDataSource extends SimpleDataSource {
+        final AtomicInteger connections = new AtomicInteger();
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            connections.incrementAndGet();
+            return super.getConnection();
+        }
+    }
+
+    /**
+     * 记录 query(Class, Condition) 的调用次数
+     */
+    static class CountingDao extends NutDao {
+        final AtomicInteger queries = new AtomicInteger();
+
+        final CountingDataSource dataSource;
+
+        CountingDao(CountingDataSource dataSource) {
+            super(dataSource);
+            this.dataSource = dataSource;
+        }
+
+        @Override
+        public <T> List<T> query(Class<T> classOfT, Condition cnd) {
+            queries.incrementAndGet();
+            return super.query(classOfT, cnd);
+        }
+    }
+
+    public static class UserDao extends BaseDao<User> {
+    }
+
+    @Table("biz_user")
+    public static class User {
+        @Id(auto = false)
+        private long id;
+        @Name
+        private String name;
+        @Column
+        private int score;
+
+        public static User of(long id) {
+            User user = new User();
+            user.id = id;
+            user.name = "user" + id;
+            user.score = (int) id;
+            return user;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public void setId(long id) {
+            this.id = id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public void setScore(int score) {
+            this.score = score;
+        }
+    }
+}
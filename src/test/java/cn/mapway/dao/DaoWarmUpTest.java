@@ -0,0 +1,79 @@
+package cn.mapway.dao;
+
+import cn.mapway.dao.DaoTestSupport.CountingDao;
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DaoWarmUpTest {
+
+    public static class UnresolvedDao<E> extends BaseDao<E> {
+        public UnresolvedDao(Class<E> clazz) {
+            super(clazz);
+        }
+    }
+
+    @Test
+    public void resolvesEntityMappingWithoutStatements() {
+        CountingDao dao = DaoTestSupport.createDao(0);
+        WarmUpReport report = new DaoWarmUp(dao).register(UserDao.class).run();
+
+        assertTrue(report.isSuccess());
+        assertEquals(1, report.getItems().size());
+        WarmUpReport.Item item = report.getItems().get(0);
+        assertSame(UserDao.class, item.getDaoType());
+        assertSame(User.class, item.getEntityClass());
+        assertEquals(0, item.getStatements());
+        assertEquals(0, dao.dataSource.connections.get());
+        assertSame(dao.getEntity(User.class), EntityRegistry.entity(dao, User.class));
+    }
+
+    @Test
+    public void prepareStatementsOnOneConnection() {
+        CountingDao dao = DaoTestSupport.createDao(0);
+        WarmUpReport report = new DaoWarmUp(dao).registerEntity(User.class).prepareStatements(true).run();
+
+        WarmUpReport.Item item = report.getItems().get(0);
+        assertNull(item.getError());
+        assertNull(item.getDaoType());
+        // insert count 按 id 的 fetch update delete 以及按 name 的 fetch
+        assertEquals(6, item.getStatements());
+        assertEquals(6, item.getPrepared());
+        assertEquals(1, dao.dataSource.connections.get());
+    }
+
+    @Test
+    public void failuresAreReportedPerEntity() {
+        CountingDao dao = DaoTestSupport.createDao(0);
+        WarmUpReport report = new DaoWarmUp(dao)
+                .register(UnresolvedDao.class)
+                .register(new UnresolvedDao<>(User.class))
+                .prepareStatements(true)
+                .run();
+
+        assertFalse(report.isSuccess());
+        assertEquals(1, report.getFailedCount());
+        assertNotNull(report.getItems().get(0).getError());
+        assertNull(report.getItems().get(1).getError());
+    }
+
+    @Test
+    public void registerKnownUsesCreatedDaoTypes() {
+        DaoTestSupport.userDao(DaoTestSupport.createDao(0));
+        assertTrue(EntityRegistry.knownDaoTypes().contains(UserDao.class));
+
+        WarmUpReport report = new DaoWarmUp(DaoTestSupport.createDao(0)).registerKnown().run();
+        boolean found = false;
+        for (WarmUpReport.Item item : report.getItems()) {
+            found |= item.getEntityClass() == User.class;
+        }
+        assertTrue(found);
+    }
+}
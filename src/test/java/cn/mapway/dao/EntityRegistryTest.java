@@ -0,0 +1,80 @@
+package cn.mapway.dao;
+
+import cn.mapway.dao.DaoTestSupport.User;
+import cn.mapway.dao.DaoTestSupport.UserDao;
+import org.junit.Test;
+import org.nutz.dao.Dao;
+import org.nutz.dao.entity.Entity;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class EntityRegistryTest {
+
+    public abstract static class AbstractDao<E, K> extends BaseDao<E> {
+    }
+
+    public static class LayeredUserDao extends AbstractDao<User, Long> {
+    }
+
+    /**
+     * 模拟 CGLIB ByteBuddy 生成的代理子类
+     */
+    public static class UserDaoProxy extends LayeredUserDao {
+    }
+
+    public static class GenericDao<E> extends BaseDao<E> {
+        public GenericDao(Class<E> clazz) {
+            super(clazz);
+        }
+    }
+
+    public static class ListDao extends BaseDao<Map<String, Object>> {
+    }
+
+    @Test
+    public void directSubclass() {
+        assertSame(User.class, EntityRegistry.entityClass(UserDao.class));
+    }
+
+    @Test
+    public void typeArgumentPassedThroughHierarchy() {
+        assertSame(User.class, EntityRegistry.entityClass(LayeredUserDao.class));
+        assertSame(User.class, EntityRegistry.entityClass(UserDaoProxy.class));
+    }
+
+    @Test
+    public void parameterizedEntityResolvesToRawType() {
+        assertSame(Map.class, EntityRegistry.entityClass(ListDao.class));
+    }
+
+    @Test
+    public void explicitEntityClassConstructor() {
+        GenericDao<User> dao = new GenericDao<>(User.class);
+        assertSame(User.class, dao.getEntityClass());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unresolvedTypeVariableIsRejected() {
+        EntityRegistry.entityClass(GenericDao.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonDaoIsRejected() {
+        EntityRegistry.entityClass(String.class);
+    }
+
+    @Test
+    public void entityMappingIsReusedPerDao() {
+        Dao first = DaoTestSupport.createDao(0);
+        Entity<User> entity = EntityRegistry.entity(first, User.class);
+        assertSame(entity, EntityRegistry.entity(first, User.class));
+        assertEquals("biz_user", entity.getTableName());
+
+        Dao second = DaoTestSupport.createDao(0);
+        assertNotSame(entity, EntityRegistry.entity(second, User.class));
+    }
+}
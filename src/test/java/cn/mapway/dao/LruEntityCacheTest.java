@@ -0,0 +1,84 @@
+package cn.mapway.dao;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LruEntityCacheTest {
+
+    private static List<Object> keys(Object... keys) {
+        return new ArrayList<>(Arrays.asList(keys));
+    }
+
+    @Test
+    public void allKeysOfAnEntityInvalidateTogether() {
+        LruEntityCache<String> cache = new LruEntityCache<>(100, 0);
+        cache.put(keys(1L, "one"), "v1");
+        assertSame("v1", cache.get("one"));
+        cache.invalidate(1L);
+        assertNull(cache.get("one"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void loadRacingWithInvalidationIsNotCached() {
+        LruEntityCache<String> cache = new LruEntityCache<>(100, 0);
+        long stamp = cache.stamp();
+        // 加载期间另一个线程更新并让缓存失效
+        cache.invalidate(1L);
+        assertFalse(cache.put(keys(1L), "stale", stamp));
+        assertNull(cache.get(1L));
+
+        stamp = cache.stamp();
+        assertTrue(cache.put(keys(1L), "fresh", stamp));
+        assertSame("fresh", cache.get(1L));
+    }
+
+    @Test
+    public void clearAlsoBlocksInFlightLoads() {
+        LruEntityCache<String> cache = new LruEntityCache<>(100, 0);
+        long stamp = cache.stamp();
+        cache.clear();
+        assertFalse(cache.put(keys(1L), "stale", stamp));
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        LruEntityCache<String> cache = new LruEntityCache<>(2, 0);
+        cache.put(keys(1L), "a");
+        cache.put(keys(2L), "b");
+        cache.get(1L);
+        cache.put(keys(3L), "c");
+        assertSame("a", cache.get(1L));
+        assertNull(cache.get(2L));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictingOneKeyRemovesTheOtherKeys() {
+        LruEntityCache<String> cache = new LruEntityCache<>(2, 0);
+        cache.put(keys(1L, "one"), "a");
+        cache.put(keys(2L), "b");
+        assertNull(cache.get(1L));
+        assertNull(cache.get("one"));
+        assertSame("b", cache.get(2L));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void expiredEntriesAreMisses() throws InterruptedException {
+        LruEntityCache<String> cache = new LruEntityCache<>(10, 1);
+        cache.put(keys(1L), "a");
+        assertSame("a", cache.get(1L));
+        Thread.sleep(1100);
+        assertNull(cache.get(1L));
+    }
+}
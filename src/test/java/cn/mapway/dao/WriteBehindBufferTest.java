@@ -0,0 +1,219 @@
+package cn.mapway.dao;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class WriteBehindBufferTest {
+
+    private final List<List<Integer>> batches = new CopyOnWriteArrayList<>();
+    private final List<Integer> callerWritten = new CopyOnWriteArrayList<>();
+    private WriteBehindBuffer<Integer> buffer;
+
+    @After
+    public void tearDown() {
+        if (buffer != null) {
+            buffer.close();
+        }
+    }
+
+    private WriteBehindBuffer<Integer> create(int capacity, int batchSize, long maxDelayMillis, WriteBehindPolicy policy,
+                                              Consumer<List<Integer>> writer) {
+        buffer = new WriteBehindBuffer<>("test-write-behind", capacity, batchSize, maxDelayMillis, policy,
+                writer, callerWritten::add);
+        return buffer;
+    }
+
+    private WriteBehindBuffer<Integer> create(int capacity, int batchSize, long maxDelayMillis, WriteBehindPolicy policy) {
+        return create(capacity, batchSize, maxDelayMillis, policy, batch -> batches.add(new ArrayList<>(batch)));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("等待超时");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private int writtenRows() {
+        int count = 0;
+        for (List<Integer> batch : batches) {
+            count += batch.size();
+        }
+        return count;
+    }
+
+    /**
+     * 后台线程卡在第一批的写入中, 缓冲区中再放入 capacity 条数据以后就满了
+     */
+    private CountDownLatch fillWhileWriterBlocked(int capacity, WriteBehindPolicy policy) throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        create(capacity, 1, 10_000, policy, batch -> {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            batches.add(new ArrayList<>(batch));
+        });
+        assertTrue(buffer.offer(0));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i <= capacity; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertEquals(capacity, buffer.getQueueDepth());
+        return release;
+    }
+
+    @Test
+    public void fullBatchIsWrittenWithoutWaitingForDelay() throws InterruptedException {
+        create(100, 5, 60_000, WriteBehindPolicy.BLOCK);
+        for (int i = 0; i < 10; i++) {
+            buffer.offer(i);
+        }
+        await(() -> writtenRows() == 10);
+        for (List<Integer> batch : batches) {
+            assertTrue(batch.size() <= 5);
+        }
+        assertEquals(10, buffer.getWrittenCount());
+    }
+
+    @Test
+    public void partialBatchIsWrittenAfterMaxDelay() throws InterruptedException {
+        create(100, 50, 30, WriteBehindPolicy.BLOCK);
+        long start = System.nanoTime();
+        buffer.offer(1);
+        buffer.offer(2);
+        await(() -> writtenRows() == 2);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(25));
+        assertEquals(Collections.singletonList(Arrays.asList(1, 2)), batches);
+    }
+
+    @Test
+    public void flushWritesImmediately() throws InterruptedException {
+        create(100, 50, 60_000, WriteBehindPolicy.BLOCK);
+        buffer.offer(1);
+        buffer.flush();
+        await(() -> writtenRows() == 1);
+    }
+
+    @Test
+    public void dropPolicyRejectsWhenFull() throws InterruptedException {
+        CountDownLatch release = fillWhileWriterBlocked(2, WriteBehindPolicy.DROP);
+        assertFalse(buffer.offer(3));
+        assertEquals(1, buffer.getDroppedCount());
+        release.countDown();
+        buffer.close();
+        assertEquals(3, writtenRows());
+    }
+
+    @Test
+    public void callerRunsPolicyWritesInCallerThread() throws InterruptedException {
+        CountDownLatch release = fillWhileWriterBlocked(2, WriteBehindPolicy.CALLER_RUNS);
+        assertTrue(buffer.offer(3));
+        assertEquals(Collections.singletonList(3), callerWritten);
+        assertEquals(1, buffer.getCallerRunsCount());
+        release.countDown();
+        buffer.close();
+        assertEquals(3, writtenRows());
+    }
+
+    @Test
+    public void blockPolicyWaitsForSpace() throws Exception {
+        CountDownLatch release = fillWhileWriterBlocked(2, WriteBehindPolicy.BLOCK);
+        CompletableFuture<Boolean> blocked = CompletableFuture.supplyAsync(() -> buffer.offer(3));
+        Thread.sleep(50);
+        assertFalse(blocked.isDone());
+        release.countDown();
+        assertTrue(blocked.get(5, TimeUnit.SECONDS));
+        buffer.close();
+        assertEquals(4, writtenRows());
+    }
+
+    @Test
+    public void failedBatchGoesToErrorHandler() throws InterruptedException {
+        IllegalStateException error = new IllegalStateException("写入失败");
+        create(100, 2, 60_000, WriteBehindPolicy.BLOCK, batch -> {
+            throw error;
+        });
+        AtomicReference<List<Integer>> failedBatch = new AtomicReference<>();
+        buffer.setErrorHandler((batch, e) -> failedBatch.set(new ArrayList<>(batch)));
+        buffer.offer(1);
+        buffer.offer(2);
+        await(() -> failedBatch.get() != null);
+        assertEquals(Arrays.asList(1, 2), failedBatch.get());
+        assertEquals(2, buffer.getFailedCount());
+        assertSame(error, buffer.getLastError());
+    }
+
+    @Test
+    public void closeDrainsEverythingAndRejectsLaterOffers() {
+        create(1000, 100, 60_000, WriteBehindPolicy.BLOCK);
+        for (int i = 0; i < 250; i++) {
+            buffer.offer(i);
+        }
+        buffer.close();
+        assertEquals(250, writtenRows());
+        assertEquals(0, buffer.getQueueDepth());
+        try {
+            buffer.offer(1);
+            fail();
+        } catch (IllegalStateException expected) {
+            // 已经关闭
+        }
+    }
+
+    @Test
+    public void acceptedOffersRacingWithCloseAreWritten() throws Exception {
+        create(64, 8, 1, WriteBehindPolicy.BLOCK);
+        AtomicInteger accepted = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch started = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0; ; i++) {
+                        if (buffer.offer(i)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                } catch (IllegalStateException closed) {
+                    // 关闭以后的 offer 失败
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        started.await();
+        Thread.sleep(20);
+        buffer.close();
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        assertEquals(accepted.get(), writtenRows());
+    }
+}